@@ -0,0 +1,76 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ArrayRegistry;
+import org.luolong.collections.registry.IndexedKey;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lookups of indexed keys in {@link ArrayRegistry} with lookups in {@link MapRegistry}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayRegistryBenchmark {
+
+    @Param({"4", "32", "512"})
+    int size;
+
+    @Param({"array", "map"})
+    String implementation;
+
+    private Registry registry;
+    private IndexedKey<Integer>[] keys;
+    private int index;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        registry = "array".equals(implementation) ? new ArrayRegistry() : new MapRegistry();
+        keys = new IndexedKey[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = Keys.indexed(Integer.class);
+            registry.put(keys[i], i);
+        }
+    }
+
+    private IndexedKey<Integer> nextKey() {
+        // sizes are powers of two, so masking wraps the index around
+        return keys[index++ & (size - 1)];
+    }
+
+    @Benchmark
+    public Integer get() {
+        return registry.get(nextKey());
+    }
+
+    @Benchmark
+    public void put() {
+        registry.put(nextKey(), index);
+    }
+
+    @Benchmark
+    public Integer removeAndPut() {
+        IndexedKey<Integer> key = nextKey();
+        Integer value = registry.remove(key);
+        registry.put(key, value);
+        return value;
+    }
+}
@@ -0,0 +1,140 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.AsyncRegistry;
+import org.luolong.collections.registry.ConcurrentRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 100k concurrent readers of values that are loaded remotely, each reader running in a thread of its own.
+ * <p/>
+ * Every invocation starts with an empty registry, so the first readers of each key load its value,
+ * which takes {@link #LATENCY_MILLIS} milliseconds, and the rest wait for the load. The
+ * <code>async</code> registry loads the values with {@link AsyncRegistry#computeIfAbsentAsync}, the
+ * <code>blocking</code> registry with {@link ConcurrentRegistry#computeIfAbsent}, which holds a
+ * monitor of the backing map while loading, pinning the carrier threads of virtual threads.
+ * <p/>
+ * The <code>virtual</code> readers need Java 21 or later. The benchmarks are compiled for Java 8, but
+ * can be forked in a newer JVM, e.g.
+ * <pre>
+ * gradle :registry-jmh:jmh -Pjmh="AsyncRegistryBenchmark -jvm /path/to/java21/bin/java"
+ * </pre>
+ * Times are per reader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncRegistryBenchmark {
+
+    static final int READERS = 100000;
+    static final int KEYS = 1024;
+    static final long LATENCY_MILLIS = 1;
+
+    @Param({"virtual", "platform"})
+    String threads;
+
+    @Param({"async", "blocking"})
+    String registry;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService remote;
+    private Key<String>[] keys;
+
+    private AsyncRegistry async;
+    private ConcurrentRegistry blocking;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        executor = "virtual".equals(threads) ? virtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(256);
+        remote = Executors.newSingleThreadScheduledExecutor();
+        keys = new Key[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = Keys.of(String.class, "key-" + i);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        blocking = new ConcurrentRegistry();
+        async = new AsyncRegistry(blocking);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        remote.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READERS)
+    public Object readers() throws Exception {
+        final CountDownLatch done = new CountDownLatch(READERS);
+        final AtomicReference<Object> last = new AtomicReference<>();
+        final boolean useAsync = "async".equals(registry);
+        for (int i = 0; i < READERS; i++) {
+            final Key<String> key = keys[i & (KEYS - 1)];
+            executor.execute(() -> {
+                try {
+                    last.lazySet(useAsync ? async.computeIfAbsentAsync(key, this::loadAsync).join()
+                            : blocking.computeIfAbsent(key, this::load));
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return last.get();
+    }
+
+    private CompletableFuture<String> loadAsync(Key<String> key) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        remote.schedule(() -> future.complete("remote"), LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private String load(Key<String> key) {
+        try {
+            Thread.sleep(LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "remote";
+    }
+
+    /**
+     * Returns <code>Executors.newVirtualThreadPerTaskExecutor()</code>, which is not available before Java 21.
+     */
+    private static ExecutorService virtualThreadPerTaskExecutor() throws Exception {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, run with -p threads=platform", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ArrayRegistry;
+import org.luolong.collections.registry.Batch;
+import org.luolong.collections.registry.ConcurrentRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares looking up the keys of a request one by one with looking them up as a {@link Batch}.
+ * <p/>
+ * The registry holds {@link #SIZE} indexed keys, of which every request looks up <code>batch</code>
+ * keys in random order. For the concurrent registry, the batch lookup is a consistent snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    static final int SIZE = 1024;
+
+    @Param({"map", "array", "concurrent"})
+    String implementation;
+
+    @Param({"20", "40"})
+    int batch;
+
+    private Registry registry;
+    private Key<?>[] keys;
+    private Object[] values;
+    private Batch holder;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        if ("map".equals(implementation)) {
+            registry = new MapRegistry();
+        } else if ("array".equals(implementation)) {
+            registry = new ArrayRegistry();
+        } else {
+            registry = new ConcurrentRegistry();
+        }
+        Key<Integer>[] all = new Key[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            all[i] = Keys.indexed(Integer.class);
+            registry.put(all[i], i);
+        }
+        Collections.shuffle(Arrays.asList(all), new Random(42));
+        keys = Arrays.copyOf(all, batch);
+        values = new Object[batch];
+        for (int i = 0; i < batch; i++) {
+            values[i] = i;
+        }
+        holder = new Batch(keys);
+    }
+
+    @Benchmark
+    public void getEach(Blackhole blackhole) {
+        for (Key<?> key : keys) {
+            blackhole.consume(registry.get(key));
+        }
+    }
+
+    @Benchmark
+    public void getAll(Blackhole blackhole) {
+        registry.getAll(holder);
+        for (int i = 0; i < keys.length; i++) {
+            blackhole.consume(holder.value(i));
+        }
+    }
+
+    @Benchmark
+    public void putEach() {
+        for (int i = 0; i < keys.length; i++) {
+            put(keys[i], values[i]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void put(Key<T> key, Object value) {
+        registry.put(key, (T) value);
+    }
+
+    @Benchmark
+    public void putAll() {
+        registry.putAll(keys, values);
+    }
+}
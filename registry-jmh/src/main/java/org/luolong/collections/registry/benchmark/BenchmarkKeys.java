@@ -0,0 +1,22 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.GenerateRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.Registry.Key;
+
+/**
+ * Key constants of the benchmarks, with a {@link BenchmarkKeysRegistry} generated for them.
+ */
+@GenerateRegistry
+public final class BenchmarkKeys {
+    private BenchmarkKeys() {/* No instantiation allowed */}
+
+    public static final Key<String> NAME = Keys.of(String.class, "name");
+    public static final Key<String> HOST = Keys.of(String.class, "host");
+    public static final Key<Integer> PORT = Keys.of(Integer.class, "port");
+    public static final Key<Long> TIMEOUT = Keys.of(Long.class, "timeout");
+    public static final Key<Boolean> ENABLED = Keys.of(Boolean.class, "enabled");
+    public static final Key<Double> RATIO = Keys.of(Double.class, "ratio");
+    public static final Key<String> USER = Keys.of(String.class, "user");
+    public static final Key<String> PASSWORD = Keys.of(String.class, "password");
+}
@@ -0,0 +1,126 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ArrayRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the bulk {@link Registry#putAll(Registry) putAll} and {@link Registry#removeAll(Class) removeAll}
+ * operations with copying and removing the entries one by one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkOperationsBenchmark {
+
+    @Param({"1000", "50000"})
+    int size;
+
+    @Param({"map", "array"})
+    String implementation;
+
+    private Registry source;
+    private Map<Key<?>, Object> sourceMap;
+
+    @Setup
+    public void setUp() {
+        source = newRegistry();
+        sourceMap = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            // half of the keys are indexed, so that the array registry uses both of its storages
+            Key<Integer> key = i % 2 == 0 ? Keys.indexed(Integer.class) : Keys.of(Integer.class, "integer-" + i);
+            Key<String> other = Keys.of(String.class, "string-" + i);
+            source.put(key, i);
+            source.put(other, "value-" + i);
+            sourceMap.put(key, i);
+            sourceMap.put(other, "value-" + i);
+        }
+    }
+
+    private Registry newRegistry() {
+        return "array".equals(implementation) ? new ArrayRegistry() : new MapRegistry();
+    }
+
+    @Benchmark
+    public Registry putAll() {
+        Registry registry = newRegistry();
+        registry.putAll(source);
+        return registry;
+    }
+
+    @Benchmark
+    public Registry putAllMap() {
+        Registry registry = newRegistry();
+        registry.putAll(sourceMap);
+        return registry;
+    }
+
+    @Benchmark
+    public Registry putEntryByEntry() {
+        Registry registry = newRegistry();
+        for (Registry.Entry<?> entry : source.entrySet()) {
+            put(registry, entry);
+        }
+        return registry;
+    }
+
+    private static <T> void put(Registry registry, Registry.Entry<T> entry) {
+        registry.put(entry.getKey(), entry.getValue());
+    }
+
+    @Benchmark
+    public Set<? extends Registry.Entry<? extends Integer>> removeAll(Target target) {
+        return target.registry.removeAll(Integer.class);
+    }
+
+    @Benchmark
+    public int removeEntryByEntry(Target target) {
+        int removed = 0;
+        Iterator<Registry.Entry<?>> iterator = target.registry.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getKey().getType() == Integer.class) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Full copy of the source registry for every removal, which is too expensive to make
+     * within the measured operation.
+     */
+    @State(Scope.Thread)
+    public static class Target {
+        Registry registry;
+
+        @Setup(Level.Invocation)
+        public void setUp(BulkOperationsBenchmark benchmark) {
+            registry = benchmark.newRegistry();
+            registry.putAll(benchmark.source);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.CachingRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput and the hit rate of a bounded {@link CachingRegistry} against an
+ * unbounded {@link MapRegistry}, for a skewed distribution of keys where a miss loads the value.
+ * <p/>
+ * The hit and miss counts are reported as secondary results. The caching registry can also be
+ * measured with concurrent readers, e.g.
+ * <pre>
+ * gradle :registry-jmh:jmh -Pjmh="CachingRegistryBenchmark -p implementation=caching -t 4"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachingRegistryBenchmark {
+
+    private static final int KEYS = 100000;
+    private static final int SAMPLES = 1 << 16;
+
+    @Param({"map", "caching"})
+    String implementation;
+
+    @Param({"1000", "10000"})
+    int maximumSize;
+
+    private Registry registry;
+    private Key<Integer>[] keys;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        registry = "caching".equals(implementation)
+                ? CachingRegistry.builder().maximumSize(maximumSize).build()
+                : new MapRegistry();
+        Random random = new Random(42);
+        keys = new Key[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            // log-uniform distribution: a few hot keys and a long tail of cold keys
+            int key = (int) Math.pow(KEYS, random.nextDouble()) - 1;
+            keys[i] = Keys.of(Integer.class, "key-" + key);
+        }
+    }
+
+    /**
+     * Per-thread position in the key samples and the hit and miss counts.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class Counters {
+        public long hits;
+        public long misses;
+        int index;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = misses = 0;
+            index = (int) Thread.currentThread().getId() * 7919;
+        }
+    }
+
+    @Benchmark
+    public Integer getOrLoad(Counters counters) {
+        Key<Integer> key = keys[counters.index++ & (SAMPLES - 1)];
+        Integer value = registry.get(key);
+        if (value != null) {
+            counters.hits++;
+            return value;
+        }
+        counters.misses++;
+        value = counters.index;
+        registry.put(key, value);
+        return value;
+    }
+}
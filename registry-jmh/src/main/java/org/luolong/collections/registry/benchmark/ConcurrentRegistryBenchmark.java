@@ -0,0 +1,105 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ConcurrentRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded throughput of {@link ConcurrentRegistry} compared to a {@link MapRegistry}
+ * backed by a synchronized map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentRegistryBenchmark {
+
+    private static final int SIZE = 1024;
+
+    @Param({"concurrent", "synchronized"})
+    String implementation;
+
+    private Registry registry;
+    private Registry.Key<Integer>[] keys;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        registry = "concurrent".equals(implementation)
+                ? new ConcurrentRegistry()
+                : new MapRegistry(Collections.synchronizedMap(new HashMap<>()));
+        keys = new Registry.Key[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = Keys.of(Integer.class, "key-" + i);
+            registry.put(keys[i], i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next() {
+            return index++ & (SIZE - 1);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Integer readOnly(Cursor cursor) {
+        return registry.get(keys[cursor.next()]);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(7)
+    public Integer readMostlyGet(Cursor cursor) {
+        return registry.get(keys[cursor.next()]);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public void readMostlyPut(Cursor cursor) {
+        int index = cursor.next();
+        registry.put(keys[index], index);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(4)
+    public Integer writeHeavyGet(Cursor cursor) {
+        return registry.get(keys[cursor.next()]);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(4)
+    public Integer writeHeavyRemoveAndPut(Cursor cursor) {
+        Registry.Key<Integer> key = keys[cursor.next()];
+        Integer value = registry.remove(key);
+        registry.put(key, value);
+        return value;
+    }
+}
@@ -0,0 +1,60 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ConcurrentRegistry;
+import org.luolong.collections.registry.InstrumentedRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of recording the metrics of lookups with {@link InstrumentedRegistry},
+ * timing every lookup or sampling one in 64, against the plain registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class InstrumentedRegistryBenchmark {
+
+    private static final Key<String> KEY = Keys.of(String.class, "key");
+
+    @Param({"plain", "instrumented", "sampled"})
+    String implementation;
+
+    private Registry registry;
+
+    @Setup
+    public void setUp() {
+        Registry plain = new ConcurrentRegistry();
+        plain.put(KEY, "value");
+        if ("instrumented".equals(implementation)) {
+            registry = new InstrumentedRegistry(plain);
+        } else if ("sampled".equals(implementation)) {
+            registry = new InstrumentedRegistry(plain, 64);
+        } else {
+            registry = plain;
+        }
+    }
+
+    @Benchmark
+    public String get() {
+        return registry.get(KEY);
+    }
+}
@@ -0,0 +1,102 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ArrayRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.luolong.collections.registry.RegistryVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scanning the whole registry through its views with visiting it with
+ * {@link Registry#forEach(RegistryVisitor)} and {@link Registry#forEachOfType(Class, java.util.function.BiConsumer)}.
+ * <p/>
+ * Meant to be run with the GC profiler, which reports the allocation rate per operation:
+ * <pre>
+ * gradle :registry-jmh:jmh -Pjmh="IterationBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationBenchmark {
+
+    @Param({"100", "10000"})
+    int size;
+
+    @Param({"map", "array"})
+    String implementation;
+
+    private Registry registry;
+
+    @Setup
+    public void setUp() {
+        registry = "array".equals(implementation) ? new ArrayRegistry() : new MapRegistry();
+        for (int i = 0; i < size; i++) {
+            if (i % 2 == 0) {
+                registry.put(Keys.of(Long.class, "long-" + i), (long) i);
+            } else {
+                registry.put(Keys.of(String.class, "string-" + i), "value-" + i);
+            }
+        }
+    }
+
+    @Benchmark
+    public void entrySet(Blackhole blackhole) {
+        for (Registry.Entry<?> entry : registry.entrySet()) {
+            blackhole.consume(entry.getKey());
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void keySet(Blackhole blackhole) {
+        for (Key<?> key : registry.keySet()) {
+            blackhole.consume(key);
+        }
+    }
+
+    @Benchmark
+    public void entrySetOfType(Blackhole blackhole) {
+        for (Registry.Entry<? extends Long> entry : registry.entrySet(Long.class)) {
+            blackhole.consume(entry.getKey());
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void forEach(final Blackhole blackhole) {
+        registry.forEach(new RegistryVisitor() {
+            @Override
+            public <T> void visit(Key<T> key, T value) {
+                blackhole.consume(key);
+                blackhole.consume(value);
+            }
+        });
+    }
+
+    @Benchmark
+    public void forEachOfType(final Blackhole blackhole) {
+        registry.forEachOfType(Long.class, (key, value) -> {
+            blackhole.consume(key);
+            blackhole.consume(value);
+        });
+    }
+}
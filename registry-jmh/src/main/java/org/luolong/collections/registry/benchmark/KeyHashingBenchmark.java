@@ -0,0 +1,124 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of hashing and comparing the shipped key implementations on {@link MapRegistry#get(Registry.Key)}.
+ * <p/>
+ * Run with the GC profiler to see the allocation rate per lookup, which should be zero for every key kind:
+ * <pre>gradle jmh -Pjmh="KeyHashingBenchmark -prof gc"</pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyHashingBenchmark {
+
+    private static final int SIZE = 256;
+
+    @Param({"type", "named", "interned", "identity"})
+    String keyKind;
+
+    private Registry registry;
+    private Registry.Key<?>[] stored;
+    // Keys used for lookups, equal but (except for interned and identity keys) not identical to the stored ones
+    private Registry.Key<?>[] lookups;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        registry = new MapRegistry();
+        stored = new Registry.Key[SIZE];
+        lookups = new Registry.Key[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            stored[i] = newKey(i);
+            lookups[i] = "identity".equals(keyKind) ? stored[i] : newKey(i);
+            put(stored[i], valueOf(stored[i], i));
+        }
+    }
+
+    private Registry.Key<?> newKey(int i) {
+        switch (keyKind) {
+            case "type":
+                return Keys.of(Types.TYPES[i]);
+            case "named":
+                return Keys.of(Integer.class, "key-" + i);
+            case "interned":
+                return Keys.intern(Integer.class, "key-" + i);
+            case "identity":
+                return Keys.identity(Integer.class);
+            default:
+                throw new IllegalArgumentException(keyKind);
+        }
+    }
+
+    private static Object valueOf(Registry.Key<?> key, int i) {
+        Class<?> type = key.getType();
+        if (type.isArray()) {
+            return java.lang.reflect.Array.newInstance(type.getComponentType(), 0);
+        }
+        if (type == String.class) {
+            return String.valueOf(i);
+        }
+        if (type == Long.class) {
+            return (long) i;
+        }
+        return type == Integer.class ? i : new Object();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void put(Registry.Key<?> key, Object value) {
+        ((MapRegistry) registry).put((Registry.Key<Object>) key, value);
+    }
+
+    @Benchmark
+    public Object get() {
+        return registry.get(lookups[index++ & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public int keyHashCode() {
+        return lookups[index++ & (SIZE - 1)].hashCode();
+    }
+
+    @Benchmark
+    public boolean keyEquals() {
+        int i = index++ & (SIZE - 1);
+        return stored[i].equals(lookups[i]);
+    }
+
+    /**
+     * Distinct types for the type keys, which are unique per type: the base types and arrays of them.
+     */
+    static final class Types {
+        static final Class<?>[] TYPES = new Class<?>[SIZE];
+
+        static {
+            Class<?>[] arrays = {Object.class, String.class, Integer.class, Long.class};
+            for (int i = 0; i < SIZE; i++) {
+                Class<?> type = arrays[i & 3];
+                for (int dimensions = 0; dimensions < i >> 2; dimensions++) {
+                    type = java.lang.reflect.Array.newInstance(type, 0).getClass();
+                }
+                TYPES[i] = type;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Creates the keys of the benchmarks that compare the key implementations.
+ * <p/>
+ * There is only one type key per class, so type keys are created for generated classes: proxy
+ * classes implementing <code>Runnable</code>, each defined by a class loader of its own. There are
+ * at most {@link #TYPE_KEYS} of them, larger registries are filled up with named keys.
+ */
+final class KeyKinds {
+    private KeyKinds() {/* No instantiation allowed */}
+
+    static final String TYPE = "type";
+    static final String NAMED = "named";
+    static final String IDENTITY = "identity";
+
+    static final int TYPE_KEYS = 10000;
+
+    /**
+     * Returns <code>count</code> new keys of the given kind. Keys with different <code>offset</code>s
+     * are distinct, so the keys of offset 0 can be stored and the keys of offset 1 looked up as misses.
+     */
+    @SuppressWarnings("unchecked")
+    static Key<Object>[] create(String kind, int offset, int count) {
+        if (TYPE.equals(kind) && count > TYPE_KEYS) {
+            throw new IllegalArgumentException("At most " + TYPE_KEYS + " type keys are available");
+        }
+        Key<Object>[] keys = new Key[count];
+        for (int i = 0; i < count; i++) {
+            int n = offset * count + i;
+            switch (kind) {
+                case TYPE:
+                    keys[i] = (Key<Object>) (Key<?>) Keys.of(proxyType());
+                    break;
+                case NAMED:
+                    keys[i] = (Key<Object>) (Key<?>) Keys.of(Integer.class, "key-" + n);
+                    break;
+                case IDENTITY:
+                    keys[i] = Keys.identity(Integer.class);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown key kind: " + kind);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Fills the registry with the keys and with named filler keys up to the given size.
+     */
+    static void fill(Registry registry, Key<Object>[] keys, int size) {
+        for (Key<Object> key : keys) {
+            registry.put(key, valueOf(key));
+        }
+        for (int i = keys.length; i < size; i++) {
+            registry.put(Keys.of(String.class, "filler-" + i), "filler");
+        }
+    }
+
+    /**
+     * Returns the number of keys of the kind in a registry of the given size.
+     */
+    static int count(String kind, int size) {
+        return TYPE.equals(kind) ? Math.min(size, TYPE_KEYS) : size;
+    }
+
+    /**
+     * Returns the type of the typed views selecting all the keys of the kind and none of the filler keys.
+     */
+    static Class<?> viewType(String kind) {
+        return TYPE.equals(kind) ? Runnable.class : Integer.class;
+    }
+
+    /**
+     * Returns a copy of the keys in random order, so that the order of insertion does not favour
+     * any of the hash tables.
+     */
+    static Key<Object>[] shuffled(Key<Object>[] keys) {
+        Key<Object>[] order = keys.clone();
+        Collections.shuffle(Arrays.asList(order), new Random(42));
+        return order;
+    }
+
+    /**
+     * Returns the values of the keys, in the same order.
+     */
+    static Object[] values(Key<Object>[] keys) {
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = valueOf(keys[i]);
+        }
+        return values;
+    }
+
+    private static Object valueOf(Key<?> key) {
+        Class<?> type = key.getType();
+        if (type == Integer.class) {
+            return 42;
+        }
+        try {
+            return type.getConstructor(InvocationHandler.class).newInstance(HANDLER);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final InvocationHandler HANDLER = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null;
+        }
+    };
+
+    private static Class<?> proxyType() {
+        ClassLoader loader = new ClassLoader(KeyKinds.class.getClassLoader()) {
+        };
+        return Proxy.getProxyClass(loader, Runnable.class);
+    }
+}
@@ -0,0 +1,104 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.LayeredRegistry;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scope creation and lookup costs of {@link LayeredRegistry} at different chain depths,
+ * compared to copying the global registry into a new {@link MapRegistry} per scope.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayeredRegistryBenchmark {
+
+    private static final int GLOBAL_SIZE = 256;
+
+    @Param({"1", "2", "4", "8"})
+    int depth;
+
+    private MapRegistry global;
+    private LayeredRegistry root;
+    private LayeredRegistry deepest;
+    private MapRegistry copy;
+    private Registry.Key<Integer>[] keys;
+    private int index;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        global = new MapRegistry();
+        root = new LayeredRegistry();
+        keys = new Registry.Key[GLOBAL_SIZE];
+        for (int i = 0; i < GLOBAL_SIZE; i++) {
+            keys[i] = Keys.intern(Integer.class, "key-" + i);
+            global.put(keys[i], i);
+            root.put(keys[i], i);
+        }
+        deepest = root;
+        for (int i = 0; i < depth; i++) {
+            deepest = deepest.child();
+            deepest.put(Keys.intern(Integer.class, "scope-" + i), i);
+        }
+        copy = new MapRegistry();
+        copy.putAll(global);
+    }
+
+    private Registry.Key<Integer> nextKey() {
+        return keys[index++ & (GLOBAL_SIZE - 1)];
+    }
+
+    @Benchmark
+    public Registry createScope() {
+        LayeredRegistry scope = deepest.child();
+        scope.put(keys[0], -1);
+        return scope;
+    }
+
+    @Benchmark
+    public Registry createCopy() {
+        MapRegistry scope = new MapRegistry();
+        scope.putAll(global);
+        scope.put(keys[0], -1);
+        return scope;
+    }
+
+    @Benchmark
+    public Integer getFromParent() {
+        return deepest.get(nextKey());
+    }
+
+    @Benchmark
+    public Integer getFromFreshScope() {
+        // first lookups in a new scope walk the chain before the cache is populated
+        return deepest.child().get(nextKey());
+    }
+
+    @Benchmark
+    public Integer getFromCopy() {
+        return copy.get(nextKey());
+    }
+
+    @Benchmark
+    public int size() {
+        return deepest.size();
+    }
+}
@@ -0,0 +1,90 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ConcurrentRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lazy values of {@link ConcurrentRegistry}: populating a registry with expensive values eagerly
+ * and lazily, and reading values once they have been created.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyValueBenchmark {
+
+    private static final int SIZE = 256;
+    // Simulated cost of creating a value
+    private static final long TOKENS = 1000;
+
+    private ConcurrentRegistry registry;
+    private Registry.Key<Integer>[] eagerKeys;
+    private Registry.Key<Integer>[] lazyKeys;
+    private int index;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        registry = new ConcurrentRegistry();
+        eagerKeys = new Registry.Key[SIZE];
+        lazyKeys = new Registry.Key[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            final int value = i;
+            eagerKeys[i] = Keys.intern(Integer.class, "eager-" + i);
+            lazyKeys[i] = Keys.intern(Integer.class, "lazy-" + i);
+            registry.put(eagerKeys[i], value);
+            registry.putLazy(lazyKeys[i], () -> value);
+            registry.get(lazyKeys[i]);
+        }
+    }
+
+    private static Integer create(int value) {
+        Blackhole.consumeCPU(TOKENS);
+        return value;
+    }
+
+    @Benchmark
+    public Registry populateEagerly() {
+        ConcurrentRegistry registry = new ConcurrentRegistry(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            registry.put(eagerKeys[i], create(i));
+        }
+        return registry;
+    }
+
+    @Benchmark
+    public Registry populateLazily() {
+        ConcurrentRegistry registry = new ConcurrentRegistry(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            final int value = i;
+            registry.putLazy(eagerKeys[i], () -> create(value));
+        }
+        return registry;
+    }
+
+    @Benchmark
+    public Integer getEager() {
+        return registry.get(eagerKeys[index++ & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Integer getCreatedLazy() {
+        return registry.get(lazyKeys[index++ & (SIZE - 1)]);
+    }
+}
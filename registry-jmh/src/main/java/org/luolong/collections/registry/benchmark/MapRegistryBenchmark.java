@@ -0,0 +1,97 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded <code>get</code>, <code>put</code> and <code>remove</code> of {@link MapRegistry}
+ * for every kind of key, registry size and hit or miss heavy workload.
+ * <p/>
+ * On the <code>hit</code> workload every key looked up is in the registry, <code>put</code> replaces
+ * the value and <code>remove</code> puts the removed value back. On the <code>miss</code> workload no
+ * key looked up is in the registry, <code>put</code> adds the key and removes it again and
+ * <code>remove</code> removes an absent key.
+ * <p/>
+ * These are the hot paths compared against the baseline by <code>gradle :registry-jmh:jmhCompare</code>.
+ *
+ * @see KeyKinds
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MapRegistryBenchmark {
+
+    @Param({KeyKinds.TYPE, KeyKinds.NAMED, KeyKinds.IDENTITY})
+    String keyKind;
+
+    @Param({"1", "100", "10000", "1000000"})
+    int size;
+
+    @Param({"hit", "miss"})
+    String workload;
+
+    private Registry registry;
+    private Key<Object>[] order;
+    private Object[] values;
+    private boolean hit;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        int count = KeyKinds.count(keyKind, size);
+        Key<Object>[] keys = KeyKinds.create(keyKind, 0, count);
+        registry = new MapRegistry();
+        KeyKinds.fill(registry, keys, size);
+        hit = "hit".equals(workload);
+        order = KeyKinds.shuffled(hit ? keys : KeyKinds.create(keyKind, 1, count));
+        values = KeyKinds.values(order);
+    }
+
+    private Key<Object> nextKey() {
+        if (++index == order.length) {
+            index = 0;
+        }
+        return order[index];
+    }
+
+    @Benchmark
+    public Object get() {
+        return registry.get(nextKey());
+    }
+
+    @Benchmark
+    public void put() {
+        Key<Object> key = nextKey();
+        registry.put(key, values[index]);
+        if (!hit) {
+            registry.remove(key);
+        }
+    }
+
+    @Benchmark
+    public Object remove() {
+        Key<Object> key = nextKey();
+        Object value = registry.remove(key);
+        if (hit) {
+            registry.put(key, value);
+        }
+        return value;
+    }
+}
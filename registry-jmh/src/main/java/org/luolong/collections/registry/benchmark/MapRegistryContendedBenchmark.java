@@ -0,0 +1,99 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contended variant of {@link MapRegistryBenchmark}: a {@link MapRegistry} shared by several threads.
+ * <p/>
+ * <code>MapRegistry</code> is not thread-safe, so the shared registry is only read by the
+ * <code>read</code> group, while the <code>readWrite</code> group shares a registry backed by a
+ * synchronized map. Every thread starts at a random position of the shared key order.
+ *
+ * @see ConcurrentRegistryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MapRegistryContendedBenchmark {
+
+    @Param({KeyKinds.TYPE, KeyKinds.NAMED, KeyKinds.IDENTITY})
+    String keyKind;
+
+    @Param({"100", "10000", "1000000"})
+    int size;
+
+    private Registry registry;
+    private Registry synchronizedRegistry;
+    private Key<Object>[] order;
+    private Object[] values;
+
+    @Setup
+    public void setUp() {
+        Key<Object>[] keys = KeyKinds.create(keyKind, 0, KeyKinds.count(keyKind, size));
+        registry = new MapRegistry();
+        synchronizedRegistry = new MapRegistry(Collections.synchronizedMap(new HashMap<>()));
+        KeyKinds.fill(registry, keys, size);
+        KeyKinds.fill(synchronizedRegistry, keys, size);
+        order = KeyKinds.shuffled(keys);
+        values = KeyKinds.values(order);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = -1;
+
+        int next(int length) {
+            if (index < 0) {
+                index = ThreadLocalRandom.current().nextInt(length);
+            } else if (++index == length) {
+                index = 0;
+            }
+            return index;
+        }
+    }
+
+    @Benchmark
+    @Group("read")
+    @GroupThreads(4)
+    public Object readGet(Cursor cursor) {
+        return registry.get(order[cursor.next(order.length)]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Object readWriteGet(Cursor cursor) {
+        return synchronizedRegistry.get(order[cursor.next(order.length)]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void readWritePut(Cursor cursor) {
+        int index = cursor.next(order.length);
+        synchronizedRegistry.put(order[index], values[index]);
+    }
+}
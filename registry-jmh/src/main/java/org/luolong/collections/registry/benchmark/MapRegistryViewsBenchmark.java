@@ -0,0 +1,90 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Entry;
+import org.luolong.collections.registry.Registry.Key;
+import org.luolong.collections.registry.RegistryVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iteration and typed views of {@link MapRegistry} for every kind of key and registry size.
+ * <p/>
+ * The typed views select all the keys of the kind, and none of the <code>String</code> keys filling
+ * up a large registry of type keys. Times are per registry, not per entry.
+ *
+ * @see KeyKinds
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MapRegistryViewsBenchmark {
+
+    @Param({KeyKinds.TYPE, KeyKinds.NAMED, KeyKinds.IDENTITY})
+    String keyKind;
+
+    @Param({"1", "100", "10000", "1000000"})
+    int size;
+
+    private Registry registry;
+    private Class<?> viewType;
+
+    @Setup
+    public void setUp() {
+        registry = new MapRegistry();
+        KeyKinds.fill(registry, KeyKinds.create(keyKind, 0, KeyKinds.count(keyKind, size)), size);
+        viewType = KeyKinds.viewType(keyKind);
+    }
+
+    @Benchmark
+    public void forEach(final Blackhole blackhole) {
+        registry.forEach(new RegistryVisitor() {
+            @Override
+            public <T> void visit(Key<T> key, T value) {
+                blackhole.consume(value);
+            }
+        });
+    }
+
+    @Benchmark
+    public void entrySet(Blackhole blackhole) {
+        for (Entry<?> entry : registry.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void typedKeySet(Blackhole blackhole) {
+        for (Key<?> key : registry.keySet(viewType)) {
+            blackhole.consume(key);
+        }
+    }
+
+    @Benchmark
+    public void typedValues(Blackhole blackhole) {
+        for (Object value : registry.values(viewType)) {
+            blackhole.consume(value);
+        }
+    }
+
+    @Benchmark
+    public int typedSize() {
+        return registry.keySet(viewType).size();
+    }
+}
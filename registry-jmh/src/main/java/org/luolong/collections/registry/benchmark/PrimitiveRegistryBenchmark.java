@@ -0,0 +1,99 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.PrimitiveRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PrimitiveRegistry} with {@link MapRegistry} for registries of <code>Long</code> values.
+ * <p/>
+ * Meant to be run with the GC profiler, which reports the allocation rate and the time spent in
+ * garbage collection. The registries are large enough for the old generation to matter, larger
+ * registries can be measured with e.g.
+ * <pre>
+ * gradle :registry-jmh:jmh -Pjmh="PrimitiveRegistryBenchmark -prof gc -p size=10000000 -jvmArgs -Xmx8g"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PrimitiveRegistryBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    private Key<Long>[] keys;
+    // Keys in random order, so that sequential slot numbers do not favour either of the hash tables
+    private Key<Long>[] order;
+    private PrimitiveRegistry primitive;
+    private Registry map;
+    private int index;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        keys = new Key[size];
+        primitive = new PrimitiveRegistry(size);
+        map = new MapRegistry();
+        for (int i = 0; i < size; i++) {
+            keys[i] = Keys.indexed(Long.class);
+            primitive.putLong(keys[i], i * 1000L);
+            map.put(keys[i], i * 1000L);
+        }
+        order = keys.clone();
+        Collections.shuffle(Arrays.asList(order), new Random(42));
+    }
+
+    private Key<Long> nextKey() {
+        if (++index == size) {
+            index = 0;
+        }
+        return order[index];
+    }
+
+    @Benchmark
+    public long getLong() {
+        return primitive.getLong(nextKey());
+    }
+
+    @Benchmark
+    public Long getBoxed() {
+        return primitive.get(nextKey());
+    }
+
+    @Benchmark
+    public Long getMap() {
+        return map.get(nextKey());
+    }
+
+    @Benchmark
+    public void putLong() {
+        primitive.putLong(nextKey(), index * 1000L);
+    }
+
+    @Benchmark
+    public void putMap() {
+        map.put(nextKey(), index * 1000L);
+    }
+}
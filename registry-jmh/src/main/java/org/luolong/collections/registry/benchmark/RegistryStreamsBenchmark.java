@@ -0,0 +1,93 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.RegistryStreams;
+import org.luolong.collections.registry.ValueCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming export and import of a registry with {@link RegistryStreams}: writing it to a stream
+ * that discards the bytes, reading all the entries back, and reading only the entries of one type,
+ * which make up a tenth of the registry.
+ * <p/>
+ * Run with <code>-prof gc</code> to compare the allocation of writing with the size of the registry,
+ * e.g. <code>gradle :registry-jmh:jmh -Pjmh="RegistryStreamsBenchmark -prof gc"</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RegistryStreamsBenchmark {
+
+    @Param({"10000", "1000000"})
+    int size;
+
+    private final ValueCodecs codecs = ValueCodecs.defaults();
+    private MapRegistry registry;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        registry = new MapRegistry();
+        for (int i = 0; i < size; i++) {
+            if (i % 10 == 0) {
+                registry.put(Keys.of(Long.class, "config.counter." + i), (long) i);
+            } else {
+                registry.put(Keys.of(String.class, "config.entry." + i), "value of entry " + i);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RegistryStreams.writeTo(registry, out, codecs);
+        bytes = out.toByteArray();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        RegistryStreams.writeTo(registry, NullOutputStream.INSTANCE, codecs);
+    }
+
+    @Benchmark
+    public MapRegistry read() throws IOException {
+        MapRegistry target = new MapRegistry();
+        RegistryStreams.readFrom(new ByteArrayInputStream(bytes), codecs, target);
+        return target;
+    }
+
+    @Benchmark
+    public MapRegistry readFiltered() throws IOException {
+        MapRegistry target = new MapRegistry();
+        RegistryStreams.readFrom(new ByteArrayInputStream(bytes), codecs, target, Long.class);
+        return target;
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
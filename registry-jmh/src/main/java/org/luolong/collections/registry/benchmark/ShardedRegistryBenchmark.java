@@ -0,0 +1,142 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ConcurrentRegistry;
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.ShardedRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link ShardedRegistry} compared to {@link ConcurrentRegistry} and a
+ * {@link MapRegistry} backed by a synchronized map, as the number of threads grows.
+ * <p/>
+ * The number of threads of a JMH benchmark can not be a parameter, so {@link #main(String[])} runs
+ * the benchmark with 1, 2, 4 ... 64 threads and prints the throughput of every run, e.g.
+ * <code>gradle :registry-jmh:jmhScaling -Pjmh="-wi 3 -i 3"</code>. A single thread count is run
+ * as usual, e.g. <code>gradle :registry-jmh:jmh -Pjmh="ShardedRegistryBenchmark -t 16"</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedRegistryBenchmark {
+
+    private static final int SIZE = 1 << 14;
+    private static final int MAX_THREADS = 64;
+
+    @Param({"sharded", "concurrent", "synchronized"})
+    String implementation;
+
+    private Registry registry;
+    private Registry.Key<Integer>[] keys;
+    private Integer[] values;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        switch (implementation) {
+            case "sharded":
+                registry = new ShardedRegistry();
+                break;
+            case "concurrent":
+                registry = new ConcurrentRegistry();
+                break;
+            default:
+                registry = new MapRegistry(Collections.synchronizedMap(new HashMap<>()));
+        }
+        keys = new Registry.Key[SIZE];
+        values = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = Keys.of(Integer.class, "key-" + i);
+            values[i] = i;
+            registry.put(keys[i], values[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = ThreadLocalRandom.current().nextInt(SIZE);
+
+        int next() {
+            return index++ & (SIZE - 1);
+        }
+    }
+
+    @Benchmark
+    public Integer get(Cursor cursor) {
+        return registry.get(keys[cursor.next()]);
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        int index = cursor.next();
+        registry.put(keys[index], values[index]);
+    }
+
+    /**
+     * One put for every three gets.
+     */
+    @Benchmark
+    public Integer mixed(Cursor cursor) {
+        int index = cursor.next();
+        if ((index & 3) == 0) {
+            registry.put(keys[index], values[index]);
+            return null;
+        }
+        return registry.get(keys[index]);
+    }
+
+    /**
+     * Runs the benchmark with 1 to 64 threads, doubling the number of threads on every run. The
+     * arguments are passed on to JMH.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        List<String> rows = new ArrayList<>();
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            OptionsBuilder builder = new OptionsBuilder();
+            builder.parent(options)
+                    .include(ShardedRegistryBenchmark.class.getName())
+                    .threads(threads);
+            for (RunResult result : new Runner(builder.build()).run()) {
+                String benchmark = result.getParams().getBenchmark();
+                rows.add(String.format("%-10s %-14s %7d %14.3f",
+                        benchmark.substring(benchmark.lastIndexOf('.') + 1),
+                        result.getParams().getParam("implementation"), threads,
+                        result.getPrimaryResult().getScore()));
+            }
+        }
+        Collections.sort(rows);
+        System.out.println();
+        System.out.println(String.format("%-10s %-14s %7s %14s", "Benchmark", "implementation", "threads", "ops/us"));
+        for (String row : rows) {
+            System.out.println(row);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.MappedRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.ValueCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of a registry restored from a {@link MappedRegistry} snapshot: opening the snapshot and
+ * touching a few entries, compared to deserializing the whole snapshot into a {@link MapRegistry}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SnapshotRestoreBenchmark {
+
+    private static final int TOUCHED = 100;
+
+    @Param({"100000", "2000000"})
+    int size;
+
+    private final ValueCodecs codecs = ValueCodecs.defaults();
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void writeSnapshot() throws IOException {
+        MapRegistry registry = new MapRegistry();
+        for (int i = 0; i < size; i++) {
+            registry.put(Keys.of(String.class, "config.entry." + i), "value of entry " + i);
+        }
+        file = Files.createTempFile("registry", ".snapshot");
+        MappedRegistry.write(registry, file, codecs);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Object openAndTouch() throws IOException {
+        Registry registry = MappedRegistry.open(file, codecs);
+        Object last = null;
+        for (int i = 0; i < TOUCHED; i++) {
+            last = registry.get(Keys.of(String.class, "config.entry." + (i * (size / TOUCHED))));
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Object deserializeAndTouch() throws IOException {
+        MapRegistry registry = new MapRegistry();
+        registry.putAll(MappedRegistry.open(file, codecs));
+        Object last = null;
+        for (int i = 0; i < TOUCHED; i++) {
+            last = registry.get(Keys.of(String.class, "config.entry." + (i * (size / TOUCHED))));
+        }
+        return last;
+    }
+}
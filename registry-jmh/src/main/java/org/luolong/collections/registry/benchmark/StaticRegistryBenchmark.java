@@ -0,0 +1,72 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.ArrayRegistry;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the registry generated for {@link BenchmarkKeys} with the hash based registries, at call
+ * sites that pass key constants. Every implementation runs in a fork of its own, so the registry
+ * call sites are monomorphic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticRegistryBenchmark {
+
+    @Param({"static", "map", "array"})
+    String implementation;
+
+    private Registry registry;
+
+    @Setup
+    public void setUp() {
+        if ("static".equals(implementation)) {
+            registry = new BenchmarkKeysRegistry();
+        } else if ("map".equals(implementation)) {
+            registry = new MapRegistry();
+        } else {
+            registry = new ArrayRegistry();
+        }
+        registry.put(BenchmarkKeys.NAME, "registry");
+        registry.put(BenchmarkKeys.HOST, "localhost");
+        registry.put(BenchmarkKeys.PORT, 8080);
+        registry.put(BenchmarkKeys.TIMEOUT, 1000L);
+        registry.put(BenchmarkKeys.ENABLED, true);
+        registry.put(BenchmarkKeys.RATIO, 0.5);
+        registry.put(BenchmarkKeys.USER, "user");
+        registry.put(BenchmarkKeys.PASSWORD, "password");
+    }
+
+    @Benchmark
+    public String get() {
+        return registry.get(BenchmarkKeys.PASSWORD);
+    }
+
+    @Benchmark
+    public int getSeveral() {
+        return registry.get(BenchmarkKeys.NAME).length() + registry.get(BenchmarkKeys.PORT)
+                + registry.get(BenchmarkKeys.USER).length();
+    }
+
+    @Benchmark
+    public void put() {
+        registry.put(BenchmarkKeys.PORT, 8081);
+    }
+}
@@ -0,0 +1,78 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares looking up a type key by supertype with looking up the registered key itself, in a
+ * {@link MapRegistry#withSupertypeResolution() resolving} registry.
+ * <p/>
+ * After the first lookup the resolution is cached, so <code>resolved</code> should stay within
+ * twice the time of <code>exact</code>. The <code>plain</code> benchmark is the exact lookup in a
+ * registry without supertype resolution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SupertypeResolutionBenchmark {
+
+    private Registry plain;
+    private Registry resolving;
+
+    private Key<ArrayDeque> exactKey;
+    private Key<Deque> supertypeKey;
+
+    @Setup
+    public void setUp() {
+        plain = new MapRegistry();
+        resolving = MapRegistry.withSupertypeResolution();
+        exactKey = Keys.of(ArrayDeque.class);
+        supertypeKey = Keys.of(Deque.class);
+        for (Registry registry : new Registry[]{plain, resolving}) {
+            registry.put(exactKey, new ArrayDeque());
+            registry.put(Keys.of(ArrayList.class), new ArrayList());
+            registry.put(Keys.of(HashMap.class), new HashMap());
+            registry.put(Keys.of(ConcurrentHashMap.class), new ConcurrentHashMap());
+            for (int i = 0; i < 16; i++) {
+                registry.put(Keys.of(String.class, "key" + i), "value" + i);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object plain() {
+        return plain.get(exactKey);
+    }
+
+    @Benchmark
+    public Object exact() {
+        return resolving.get(exactKey);
+    }
+
+    @Benchmark
+    public Object resolved() {
+        return resolving.get(supertypeKey);
+    }
+}
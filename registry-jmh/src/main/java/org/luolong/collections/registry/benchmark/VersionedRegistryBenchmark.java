@@ -0,0 +1,79 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.Keys;
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.luolong.collections.registry.VersionedRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a value cached against the {@link VersionedRegistry#version(Class) type version}
+ * with looking it up, and measures the cost of tracking the modifications.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionedRegistryBenchmark {
+
+    private static final Key<String> KEY = Keys.of(String.class, "key");
+
+    private Registry plain;
+    private VersionedRegistry versioned;
+
+    private String cached;
+    private long cachedVersion = -1;
+
+    @Setup
+    public void setUp() {
+        plain = new MapRegistry();
+        // events are not delivered, as nothing listens to them
+        versioned = new VersionedRegistry(new MapRegistry());
+        for (int i = 0; i < 1000; i++) {
+            plain.put(Keys.of(Integer.class, "key-" + i), i);
+            versioned.put(Keys.of(Integer.class, "key-" + i), i);
+        }
+        plain.put(KEY, "value");
+        versioned.put(KEY, "value");
+        versioned.version(String.class);
+    }
+
+    @Benchmark
+    public String lookup() {
+        return versioned.get(KEY);
+    }
+
+    @Benchmark
+    public String cachedRead() {
+        long version = versioned.version(String.class);
+        if (version != cachedVersion) {
+            cached = versioned.get(KEY);
+            cachedVersion = version;
+        }
+        return cached;
+    }
+
+    @Benchmark
+    public void putPlain() {
+        plain.put(KEY, "value");
+    }
+
+    @Benchmark
+    public void putVersioned() {
+        versioned.put(KEY, "value");
+    }
+}
@@ -0,0 +1,89 @@
+package org.luolong.collections.registry.benchmark;
+
+import org.luolong.collections.registry.MapRegistry;
+import org.luolong.collections.registry.Registry;
+import org.luolong.collections.registry.Registry.Key;
+import org.luolong.collections.registry.WeakRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the weak keys (and soft values) of {@link WeakRegistry} compared to the strong keys
+ * of {@link MapRegistry}, looking up and replacing the values of keys that are in the registry.
+ * <p/>
+ * The keys are kept reachable by the benchmark, so no entries are expunged while it runs, and the
+ * difference is the cost of dereferencing the keys and values and of polling the reference queue.
+ *
+ * @see MapRegistryBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WeakRegistryBenchmark {
+
+    @Param({"map", "weak", "soft"})
+    String implementation;
+
+    @Param({KeyKinds.NAMED, KeyKinds.IDENTITY})
+    String keyKind;
+
+    @Param({"100", "10000", "1000000"})
+    int size;
+
+    private Registry registry;
+    // Keeps the keys of the weak registries reachable
+    private Key<Object>[] keys;
+    private Key<Object>[] order;
+    private Object[] values;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        switch (implementation) {
+            case "map":
+                registry = new MapRegistry();
+                break;
+            case "weak":
+                registry = new WeakRegistry();
+                break;
+            default:
+                registry = WeakRegistry.withSoftValues();
+        }
+        keys = KeyKinds.create(keyKind, 0, size);
+        KeyKinds.fill(registry, keys, size);
+        order = KeyKinds.shuffled(keys);
+        values = KeyKinds.values(order);
+    }
+
+    private int next() {
+        if (++index == order.length) {
+            index = 0;
+        }
+        return index;
+    }
+
+    @Benchmark
+    public Object get() {
+        return registry.get(order[next()]);
+    }
+
+    @Benchmark
+    public void put() {
+        int i = next();
+        registry.put(order[i], values[i]);
+    }
+}
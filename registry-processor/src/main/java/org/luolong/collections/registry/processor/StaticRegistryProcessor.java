@@ -0,0 +1,214 @@
+package org.luolong.collections.registry.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@code StaticRegistry} for every class annotated with {@code GenerateRegistry}.
+ * <p/>
+ * The generated registry has a field for every <code>static final</code> key constant of the
+ * annotated class, and overrides <code>get</code> and <code>put</code> with a chain of identity
+ * comparisons against the key constants, falling back to the lookup of the base class.
+ *
+ * @author Roland Tepp
+ */
+@SupportedAnnotationTypes(StaticRegistryProcessor.ANNOTATION)
+public class StaticRegistryProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "org.luolong.collections.registry.GenerateRegistry";
+    private static final String KEY = "org.luolong.collections.registry.Registry.Key";
+    // The Generated annotation moved to javax.annotation.processing in Java 9 and is gone from javax.annotation in Java 11
+    private static final String[] GENERATED = {"javax.annotation.processing.Generated", "javax.annotation.Generated"};
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element instanceof TypeElement) {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement holder) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror keyType = types.erasure(processingEnv.getElementUtils().getTypeElement(KEY).asType());
+        List<VariableElement> keys = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(holder.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (!types.isAssignable(types.erasure(field.asType()), keyType)) {
+                continue;
+            }
+            if (!modifiers.contains(Modifier.STATIC) || !modifiers.contains(Modifier.FINAL)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Key field is not static final and is not part of the generated registry", field);
+            } else if (modifiers.contains(Modifier.PRIVATE)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Key constant of a generated registry can not be private", field);
+                return;
+            } else {
+                keys.add(field);
+            }
+        }
+
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(holder);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String name = registryName(holder);
+        String qualifiedName = packageName.isEmpty() ? name : packageName + "." + name;
+        String holderName = holder.getQualifiedName().toString();
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, holder).openWriter())) {
+            write(out, packageName, name, holderName, keys, generatedAnnotation());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Can not generate " + qualifiedName + ": " + e.getMessage(), holder);
+        }
+    }
+
+    /**
+     * Returns the qualified name of the Generated annotation available to the compiled sources,
+     * or <code>null</code> if there is none.
+     */
+    private String generatedAnnotation() {
+        for (String annotation : GENERATED) {
+            if (processingEnv.getElementUtils().getTypeElement(annotation) != null) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private String registryName(TypeElement holder) {
+        for (AnnotationMirror mirror : holder.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : mirror.getElementValues().entrySet()) {
+                    String name = value.getValue().getValue().toString();
+                    if (!name.isEmpty()) {
+                        return name;
+                    }
+                }
+            }
+        }
+        String name = holder.getSimpleName().toString();
+        for (Element outer = holder.getEnclosingElement(); outer.getKind() != ElementKind.PACKAGE; outer = outer.getEnclosingElement()) {
+            name = outer.getSimpleName() + name;
+        }
+        return name + "Registry";
+    }
+
+    private static void write(PrintWriter out, String packageName, String name, String holder, List<VariableElement> keys,
+                              String generated) {
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        out.println("import org.luolong.collections.registry.StaticRegistry;");
+        out.println();
+        out.println("import java.util.Map;");
+        out.println();
+        out.println("/**");
+        out.println(" * Registry of the keys of {@link " + holder + "}.");
+        out.println(" */");
+        if (generated != null) {
+            out.println("@" + generated + "(\"" + StaticRegistryProcessor.class.getName() + "\")");
+        }
+        out.println("public final class " + name + " extends StaticRegistry {");
+        out.println();
+        out.println("    private static final Key<?>[] KEYS = {");
+        for (VariableElement key : keys) {
+            out.println("            " + holder + "." + key.getSimpleName() + ",");
+        }
+        out.println("    };");
+        out.println("    private static final Map<Key<?>, Integer> SLOTS = slots(KEYS);");
+        out.println();
+        for (int i = 0; i < keys.size(); i++) {
+            out.println("    private Object " + field(keys, i) + " = ABSENT;");
+        }
+        out.println();
+        out.println("    public " + name + "() {");
+        out.println("        super(KEYS, SLOTS);");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    @SuppressWarnings(\"unchecked\")");
+        out.println("    public <T> T get(Key<T> key) {");
+        out.println("        Object k = key;");
+        for (int i = 0; i < keys.size(); i++) {
+            out.println("        if (k == " + holder + "." + keys.get(i).getSimpleName() + ") {");
+            out.println("            Object value = " + field(keys, i) + ";");
+            out.println("            return value == ABSENT ? null : (T) value;");
+            out.println("        }");
+        }
+        out.println("        return super.get(key);");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public <T> void put(Key<T> key, T value) {");
+        out.println("        Object k = key;");
+        for (int i = 0; i < keys.size(); i++) {
+            out.println("        if (k == " + holder + "." + keys.get(i).getSimpleName() + ") {");
+            out.println("            " + field(keys, i) + " = key.getType().cast(value);");
+            out.println("            return;");
+            out.println("        }");
+        }
+        out.println("        super.put(key, value);");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    protected Object read(int slot) {");
+        out.println("        switch (slot) {");
+        for (int i = 0; i < keys.size(); i++) {
+            out.println("            case " + i + ":");
+            out.println("                return " + field(keys, i) + ";");
+        }
+        out.println("            default:");
+        out.println("                throw new IndexOutOfBoundsException(String.valueOf(slot));");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    protected void write(int slot, Object value) {");
+        out.println("        switch (slot) {");
+        for (int i = 0; i < keys.size(); i++) {
+            out.println("            case " + i + ":");
+            out.println("                " + field(keys, i) + " = value;");
+            out.println("                break;");
+        }
+        out.println("            default:");
+        out.println("                throw new IndexOutOfBoundsException(String.valueOf(slot));");
+        out.println("        }");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private static String field(List<VariableElement> keys, int slot) {
+        return "value" + slot + "_" + keys.get(slot).getSimpleName();
+    }
+}
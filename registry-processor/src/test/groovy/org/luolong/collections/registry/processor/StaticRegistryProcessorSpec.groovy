@@ -0,0 +1,170 @@
+package org.luolong.collections.registry.processor
+
+import org.luolong.collections.registry.Keys
+import org.luolong.collections.registry.Registry
+import org.luolong.collections.registry.StaticRegistry
+import spock.lang.Specification
+
+import javax.tools.DiagnosticCollector
+import javax.tools.JavaFileObject
+import javax.tools.ToolProvider
+import java.nio.file.Files
+import java.nio.file.Path
+
+public class StaticRegistryProcessorSpec extends Specification {
+
+    static final String HOLDER = """
+        package example;
+
+        import org.luolong.collections.registry.GenerateRegistry;
+        import org.luolong.collections.registry.Keys;
+        import org.luolong.collections.registry.Registry.Key;
+
+        @GenerateRegistry
+        public class AppKeys {
+            public static final Key<String> NAME = Keys.of(String.class, "name");
+            public static final Key<Integer> PORT = Keys.of(Integer.class, "port");
+            static final Key<Long> TIMEOUT = Keys.of(Long.class, "timeout");
+            public static final String NOT_A_KEY = "not a key";
+        }
+        """
+
+    Path directory = Files.createTempDirectory("processor")
+    def diagnostics = new DiagnosticCollector<JavaFileObject>()
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    ClassLoader compile(String name, String source) {
+        def file = directory.resolve(name.replace('.', '/') + ".java")
+        Files.createDirectories(file.parent)
+        file.text = source
+        def compiler = ToolProvider.getSystemJavaCompiler()
+        def fileManager = compiler.getStandardFileManager(null, null, null)
+        def task = compiler.getTask(null, fileManager, diagnostics,
+                ["-d", directory.toString(), "-classpath", System.getProperty("java.class.path")],
+                null, fileManager.getJavaFileObjects(file.toFile()))
+        task.setProcessors([new StaticRegistryProcessor()])
+        assert task.call(), diagnostics.diagnostics.toString()
+        return new URLClassLoader([directory.toUri().toURL()] as URL[], getClass().classLoader)
+    }
+
+    def "registry is generated for the key constants of the annotated class"() {
+        def loader = compile("example.AppKeys", HOLDER)
+        def holder = loader.loadClass("example.AppKeys")
+        Registry registry = (Registry) loader.loadClass("example.AppKeysRegistry").newInstance()
+
+        when:
+        registry.put(holder.NAME, "registry")
+        registry.put(holder.PORT, 8080)
+        registry.put(Keys.of(String.class, "unknown"), "fallback")
+
+        then:
+        registry instanceof StaticRegistry
+        registry.get(holder.NAME) == "registry"
+        registry.get(holder.PORT) == 8080
+        registry.get(holder.TIMEOUT) == null
+        registry.size() == 3
+        registry.keySet() == [holder.NAME, holder.PORT, Keys.of(String.class, "unknown")] as Set
+    }
+
+    def "keys equal to the key constants are mapped to the same fields"() {
+        def loader = compile("example.AppKeys", HOLDER)
+        def holder = loader.loadClass("example.AppKeys")
+        Registry registry = (Registry) loader.loadClass("example.AppKeysRegistry").newInstance()
+
+        when:
+        registry.put(Keys.of(String.class, "name"), "equal")
+
+        then:
+        registry.get(holder.NAME) == "equal"
+
+        when:
+        registry.remove(holder.NAME)
+
+        then:
+        registry.get(Keys.of(String.class, "name")) == null
+        registry.isEmpty()
+    }
+
+    def "values put with the key constants are type checked"() {
+        def loader = compile("example.AppKeys", HOLDER)
+        def holder = loader.loadClass("example.AppKeys")
+        Registry registry = (Registry) loader.loadClass("example.AppKeysRegistry").newInstance()
+
+        when:
+        registry.put(holder.PORT, "not a port")
+
+        then:
+        thrown(ClassCastException)
+        registry.get(holder.PORT) == null
+    }
+
+    def "entry of a removed key constant has no value"() {
+        def loader = compile("example.AppKeys", HOLDER)
+        def holder = loader.loadClass("example.AppKeys")
+        Registry registry = (Registry) loader.loadClass("example.AppKeysRegistry").newInstance()
+        registry.put(holder.NAME, "registry")
+
+        when:
+        def entry = registry.entrySet().iterator().next()
+        registry.remove(holder.NAME)
+
+        then:
+        entry.getValue() == null
+    }
+
+    def "generated registry is annotated with the Generated annotation of the compiling JDK"() {
+        compile("example.AppKeys", HOLDER)
+        def source = directory.resolve("example/AppKeysRegistry.java").text
+        def generated = ["javax.annotation.processing.Generated", "javax.annotation.Generated"].find {
+            try {
+                Class.forName(it)
+            } catch (ClassNotFoundException ignored) {
+                null
+            }
+        }
+
+        expect:
+        source.contains("@" + generated + "(\"" + StaticRegistryProcessor.name + "\")")
+    }
+
+    def "name of the generated registry can be given"() {
+        def loader = compile("example.Named", """
+            package example;
+
+            import org.luolong.collections.registry.GenerateRegistry;
+            import org.luolong.collections.registry.Keys;
+            import org.luolong.collections.registry.Registry.Key;
+
+            @GenerateRegistry("Settings")
+            public interface Named {
+                Key<String> NAME = Keys.of(String.class, "name");
+            }
+            """)
+
+        expect:
+        loader.loadClass("example.Settings").newInstance() instanceof StaticRegistry
+    }
+
+    def "private key constants are rejected"() {
+        when:
+        compile("example.Private", """
+            package example;
+
+            import org.luolong.collections.registry.GenerateRegistry;
+            import org.luolong.collections.registry.Keys;
+            import org.luolong.collections.registry.Registry.Key;
+
+            @GenerateRegistry
+            public class Private {
+                private static final Key<String> NAME = Keys.of(String.class, "name");
+            }
+            """)
+
+        then:
+        thrown(AssertionError)
+        diagnostics.diagnostics*.getMessage(null).any { it.contains("can not be private") }
+    }
+}
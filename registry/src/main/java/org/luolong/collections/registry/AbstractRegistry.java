@@ -0,0 +1,392 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Skeletal implementation of the {@link Registry} interface, to minimize the
+ * effort required to implement it.
+ * <p/>
+ * Implementors need to provide {@link #get(Key)}, {@link #put(Key, Object)},
+ * {@link #remove(Key)}, {@link #size()} and {@link #entrySet()}. All the other
+ * operations (including the typed views) are implemented in terms of these,
+ * in the same manner as {@link java.util.AbstractMap} does for maps.
+ *
+ * @author Roland Tepp
+ */
+public abstract class AbstractRegistry implements Registry {
+
+    protected AbstractRegistry() {
+    }
+
+    @Override
+    public <T> void putAll(Registry r) {
+        for (Entry<?> entry : r.entrySet()) {
+            putEntry(entry);
+        }
+    }
+
+    private <T> void putEntry(Entry<T> entry) {
+        put(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> removeAll(Class<T> type) {
+        Set<Entry<? extends T>> removed = new HashSet<>();
+        Iterator<Entry<? extends T>> iterator = entrySet(type).iterator();
+        while (iterator.hasNext()) {
+            removed.add(SimpleEntry.copyOf(iterator.next()));
+            iterator.remove();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Key<?>> keySet() {
+        return new AbstractSet<Key<?>>() {
+            @Override
+            public Iterator<Key<?>> iterator() {
+                final Iterator<Entry<?>> iterator = entrySet().iterator();
+                return new Iterator<Key<?>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Key<?> next() {
+                        return iterator.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return AbstractRegistry.this.size();
+            }
+
+            @Override
+            public void clear() {
+                AbstractRegistry.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<?> values() {
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                final Iterator<Entry<?>> iterator = entrySet().iterator();
+                return new Iterator<Object>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return iterator.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entrySet().size();
+            }
+
+            @Override
+            public void clear() {
+                AbstractRegistry.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> entrySet(final Class<T> type) {
+        return new AbstractSet<Entry<? extends T>>() {
+            @Override
+            public Iterator<Entry<? extends T>> iterator() {
+                return new TypedIterator<T, Entry<? extends T>>(type) {
+                    @Override
+                    Entry<? extends T> element(Entry<? extends T> entry) {
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count(type);
+            }
+        };
+    }
+
+    @Override
+    public <T> Set<Key<? extends T>> keySet(final Class<T> type) {
+        return new AbstractSet<Key<? extends T>>() {
+            @Override
+            public Iterator<Key<? extends T>> iterator() {
+                return new TypedIterator<T, Key<? extends T>>(type) {
+                    @Override
+                    Key<? extends T> element(Entry<? extends T> entry) {
+                        return entry.getKey();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count(type);
+            }
+        };
+    }
+
+    @Override
+    public <T> Collection<? extends T> values(final Class<T> type) {
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new TypedIterator<T, T>(type) {
+                    @Override
+                    T element(Entry<? extends T> entry) {
+                        return entry.getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count(type);
+            }
+        };
+    }
+
+    @Override
+    public void clear() {
+        entrySet().clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        Iterator<Entry<?>> iterator = entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<?> entry = iterator.next();
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+            if (iterator.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private int count(Class<?> type) {
+        int count = 0;
+        for (Entry<?> entry : entrySet()) {
+            if (type.isAssignableFrom(entry.getKey().getType())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Iterator over the entries of this registry, whose key type is assignable to the given type.
+     */
+    private abstract class TypedIterator<T, E> implements Iterator<E> {
+        private final Class<T> type;
+        private Iterator<Entry<?>> iterator = entrySet().iterator();
+        private Entry<? extends T> next;
+        private Key<? extends T> last;
+
+        TypedIterator(Class<T> type) {
+            this.type = type;
+        }
+
+        abstract E element(Entry<? extends T> entry);
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            while (next == null && iterator.hasNext()) {
+                Entry<?> entry = iterator.next();
+                if (type.isAssignableFrom(entry.getKey().getType())) {
+                    next = (Entry<? extends T>) entry;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<? extends T> entry = next;
+            next = null;
+            last = entry.getKey();
+            return element(entry);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (next == null) {
+                iterator.remove();
+            } else {
+                if (!(iterator instanceof KeyIterator)) {
+                    // The backing iterator has already moved past the last returned entry, and
+                    // removing that through the registry may reorder the entries not visited yet,
+                    // so the iteration continues over their keys
+                    List<Key<?>> keys = new ArrayList<>();
+                    keys.add(next.getKey());
+                    while (iterator.hasNext()) {
+                        Key<?> key = iterator.next().getKey();
+                        if (type.isAssignableFrom(key.getType())) {
+                            keys.add(key);
+                        }
+                    }
+                    iterator = new KeyIterator(keys);
+                    next = null;
+                }
+                AbstractRegistry.this.remove(last);
+            }
+            last = null;
+        }
+    }
+
+    /**
+     * Iterator over the entries of the given keys, reading and removing them through this registry.
+     */
+    private final class KeyIterator implements Iterator<Entry<?>> {
+        private final Iterator<Key<?>> keys;
+        private Key<?> last;
+
+        KeyIterator(List<Key<?>> keys) {
+            this.keys = keys.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return keys.hasNext();
+        }
+
+        @Override
+        public Entry<?> next() {
+            last = keys.next();
+            return new KeyEntry<>(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            AbstractRegistry.this.remove(last);
+            last = null;
+        }
+    }
+
+    /**
+     * Entry of this registry looked up by its key, writing through to the registry.
+     */
+    private final class KeyEntry<T> implements Entry<T> {
+        private final Key<T> key;
+
+        KeyEntry(Key<T> key) {
+            this.key = key;
+        }
+
+        @Override
+        public Key<T> getKey() {
+            return key;
+        }
+
+        @Override
+        public T getValue() {
+            return get(key);
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = get(key);
+            put(key, value);
+            return old;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    /**
+     * A detached registry entry maintaining a key and a value.
+     * <p/>
+     * The value may be changed using the <tt>setValue</tt> method, which does not
+     * write through to any registry.
+     *
+     * @param <T> type of the value of this registry entry.
+     */
+    public static class SimpleEntry<T> implements Entry<T> {
+        private final Key<T> key;
+        private T value;
+
+        public SimpleEntry(Key<T> key, T value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Key<T> getKey() {
+            return key;
+        }
+
+        @Override
+        public T getValue() {
+            return value;
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+
+        static <T> SimpleEntry<T> copyOf(Entry<T> entry) {
+            return new SimpleEntry<T>(entry.getKey(), entry.getValue());
+        }
+    }
+}
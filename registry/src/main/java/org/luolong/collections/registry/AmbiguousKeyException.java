@@ -0,0 +1,37 @@
+package org.luolong.collections.registry;
+
+import java.util.List;
+
+/**
+ * Thrown when a type key resolves to more than one registered key of a subtype.
+ *
+ * @author Roland Tepp
+ * @see MapRegistry#withSupertypeResolution()
+ */
+public class AmbiguousKeyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Registry.Key<?> key;
+    private final List<Registry.Key<?>> candidates;
+
+    public AmbiguousKeyException(Registry.Key<?> key, List<Registry.Key<?>> candidates) {
+        super("Key " + key + " is ambiguous, candidates are " + candidates);
+        this.key = key;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Returns the key that could not be resolved.
+     */
+    public Registry.Key<?> getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the registered keys the key resolves to, ordered by the name of their type.
+     */
+    public List<Registry.Key<?>> getCandidates() {
+        return candidates;
+    }
+}
@@ -0,0 +1,304 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implementation of Registry that stores values of {@link IndexedKey indexed keys}
+ * in an array indexed by the slot of the key.
+ * <p/>
+ * Looking up a value of an indexed key costs a single array access, without hashing
+ * or comparing keys. Values for all other key types are stored in a {@code java.util.HashMap}.
+ * <p/>
+ * The storage arrays are sized by the highest slot index of the indexed keys stored in
+ * the registry, so this implementation works best with a moderate number of long lived keys.
+ *
+ * @author Roland Tepp
+ * @see Keys#indexed(Class)
+ */
+public class ArrayRegistry extends AbstractRegistry {
+
+    private static final IndexedKey<?>[] EMPTY_KEYS = {};
+    private static final Object[] EMPTY_VALUES = {};
+
+    // Keys and values of the indexed entries, indexed by the key slot
+    private IndexedKey<?>[] keys = EMPTY_KEYS;
+    private Object[] values = EMPTY_VALUES;
+    private int indexedSize;
+
+    // Storage of entries of all the other key types
+    private final Map<Key<?>, Object> map = new HashMap<>();
+
+    public ArrayRegistry() {
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        if (key instanceof IndexedKey) {
+            int slot = ((IndexedKey<T>) key).slot();
+            Object[] values = this.values;
+            return slot < values.length ? key.getType().cast(values[slot]) : null;
+        }
+        return key.getType().cast(map.get(key));
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        if (key instanceof IndexedKey) {
+            IndexedKey<T> indexedKey = (IndexedKey<T>) key;
+            int slot = indexedKey.slot();
+            if (slot >= keys.length) {
+                grow(slot + 1);
+            }
+            if (keys[slot] == null) {
+                keys[slot] = indexedKey;
+                indexedSize++;
+            }
+            values[slot] = value;
+        } else {
+            map.put(Objects.requireNonNull(key, "Key can not be null"), value);
+        }
+    }
+
+    /**
+     * Looks up the values of the keys of the batch.
+     * <p/>
+     * Indexed keys are looked up in the order of their slots, so the value array is read from
+     * front to back.
+     */
+    @Override
+    public void getAll(Batch batch) {
+        Key<?>[] keys = batch.keys;
+        Object[] values = batch.values;
+        Object[] slots = this.values;
+        for (int position : batch.slotOrder()) {
+            Key<?> key = keys[position];
+            Object value;
+            if (key instanceof IndexedKey) {
+                int slot = ((IndexedKey<?>) key).slot();
+                value = slot < slots.length ? slots[slot] : null;
+            } else {
+                value = map.get(key);
+            }
+            values[position] = key.getType().cast(value);
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified registry to this registry.
+     * <p/>
+     * Indexed entries of another <code>ArrayRegistry</code> are copied array to array.
+     */
+    @Override
+    public <T> void putAll(Registry r) {
+        if (!(r instanceof ArrayRegistry)) {
+            super.putAll(r);
+            return;
+        }
+        ArrayRegistry other = (ArrayRegistry) r;
+        if (other == this) {
+            return;
+        }
+        if (other.keys.length > keys.length) {
+            grow(other.keys.length);
+        }
+        if (indexedSize == 0) {
+            System.arraycopy(other.keys, 0, keys, 0, other.keys.length);
+            System.arraycopy(other.values, 0, values, 0, other.values.length);
+            indexedSize = other.indexedSize;
+        } else {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.keys[slot] != null) {
+                    if (keys[slot] == null) {
+                        keys[slot] = other.keys[slot];
+                        indexedSize++;
+                    }
+                    values[slot] = other.values[slot];
+                }
+            }
+        }
+        map.putAll(other.map);
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        if (key instanceof IndexedKey) {
+            int slot = ((IndexedKey<T>) key).slot();
+            if (slot >= keys.length || keys[slot] == null) {
+                return null;
+            }
+            Object old = values[slot];
+            removeSlot(slot);
+            return key.getType().cast(old);
+        }
+        return key.getType().cast(map.remove(key));
+    }
+
+    @Override
+    public int size() {
+        return indexedSize + map.size();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        indexedSize = 0;
+        map.clear();
+    }
+
+    @Override
+    public void forEach(RegistryVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                visit(visitor, keys[slot], values[slot]);
+            }
+        }
+        for (Map.Entry<Key<?>, Object> entry : map.entrySet()) {
+            visit(visitor, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static <T> void visit(RegistryVisitor visitor, Key<T> key, Object value) {
+        visitor.visit(key, key.getType().cast(value));
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ArrayRegistry.this.size();
+            }
+
+            @Override
+            public void clear() {
+                ArrayRegistry.this.clear();
+            }
+        };
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, keys.length + (keys.length >> 1));
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    private void removeSlot(int slot) {
+        keys[slot] = null;
+        values[slot] = null;
+        indexedSize--;
+    }
+
+    /**
+     * Iterates over the indexed entries first and then over the entries of the backing map.
+     */
+    private class EntryIterator implements Iterator<Entry<?>> {
+        private int nextSlot = nextSlot(0);
+        private int lastSlot = -1;
+        private final Iterator<Map.Entry<Key<?>, Object>> mapIterator = map.entrySet().iterator();
+        private boolean lastFromMap;
+
+        private int nextSlot(int from) {
+            while (from < keys.length && keys[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot < keys.length || mapIterator.hasNext();
+        }
+
+        @Override
+        public Entry<?> next() {
+            if (nextSlot < keys.length) {
+                lastSlot = nextSlot;
+                lastFromMap = false;
+                nextSlot = nextSlot(nextSlot + 1);
+                return new SlotEntry<Object>(lastSlot);
+            }
+            if (!mapIterator.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastFromMap = true;
+            return new MapEntry<Object>(mapIterator.next());
+        }
+
+        @Override
+        public void remove() {
+            if (lastFromMap) {
+                mapIterator.remove();
+            } else if (lastSlot >= 0 && keys[lastSlot] != null) {
+                removeSlot(lastSlot);
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private class SlotEntry<T> implements Entry<T> {
+        private final int slot;
+
+        SlotEntry(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Key<T> getKey() {
+            return (Key<T>) keys[slot];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getValue() {
+            return (T) values[slot];
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = getValue();
+            values[slot] = getKey().getType().cast(value);
+            return old;
+        }
+    }
+
+    private static class MapEntry<T> implements Entry<T> {
+        private final Map.Entry<Key<?>, Object> entry;
+
+        MapEntry(Map.Entry<Key<?>, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Key<T> getKey() {
+            return (Key<T>) entry.getKey();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getValue() {
+            return (T) entry.getValue();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T setValue(T value) {
+            return (T) entry.setValue(getKey().getType().cast(value));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.luolong.collections.registry;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Registry view for asynchronous callers, such as request handlers running in virtual threads or
+ * reactive pipelines.
+ * <p/>
+ * Values that are resolved remotely or are expensive to create are loaded with
+ * {@link #computeIfAbsentAsync(Key, Function)}. Concurrent calls for the same key share a single
+ * in-flight load, and {@link #getAsync(Key)} returns the in-flight load of the key, if there is one.
+ * Loaded values are stored in the underlying registry, so once a load completes, the value is
+ * also visible to the synchronous operations.
+ * <p/>
+ * None of the operations of this view block or hold a monitor while a value is being loaded, so
+ * waiting on a load never pins the carrier thread of a virtual thread. The operations are as
+ * thread-safe as the underlying registry, which should be thread-safe, e.g. a {@link ConcurrentRegistry}.
+ * The synchronous operations are passed on to the underlying registry as they are, so a value put
+ * while a load of the same key is in flight is replaced by the loaded value.
+ *
+ * @author Roland Tepp
+ */
+public class AsyncRegistry extends AbstractRegistry {
+
+    private final Registry registry;
+
+    // Loads in flight, removed once the loaded value is stored in the registry
+    private final ConcurrentHashMap<Key<?>, CompletableFuture<?>> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new asynchronous view of the given registry.
+     *
+     * @param registry registry storing the values, should be thread-safe
+     */
+    public AsyncRegistry(Registry registry) {
+        this.registry = Objects.requireNonNull(registry, "Registry can not be null");
+    }
+
+    /**
+     * Returns the value of the key.
+     * <p/>
+     * If the key has no value and a load of the key is in flight, the returned future is the future
+     * of the load. Otherwise the returned future is already completed with the value of the key, or
+     * with <code>null</code> if there is none.
+     *
+     * @param key key whose value is to be returned
+     * @return future of the value of the key
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> getAsync(Key<T> key) {
+        T value = registry.get(key);
+        if (value == null) {
+            CompletableFuture<?> load = loads.get(key);
+            if (load != null) {
+                return (CompletableFuture<T>) load;
+            }
+            // A load may have completed since the value was read, its value is stored before it is removed
+            value = registry.get(key);
+        }
+        return CompletableFuture.completedFuture(value);
+    }
+
+    /**
+     * If the key has no value, loads it with the given loader and stores the loaded value in the
+     * registry, unless <code>null</code>.
+     * <p/>
+     * The loader is invoked at most once for all the concurrent calls for the same key, which share
+     * the future of the load. If the load fails, the future completes exceptionally, nothing is stored
+     * and the next call invokes the loader again. The loader is invoked in the calling thread and
+     * should return promptly, completing the returned stage asynchronously.
+     * <p/>
+     * The returned future is shared by the callers, so it must not be completed or cancelled by them.
+     *
+     * @param key    key with which the loaded value is to be associated
+     * @param loader function starting the load of the value
+     * @return future of the existing or the loaded value of the key
+     * @throws NullPointerException if the key or the loader is <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> computeIfAbsentAsync(final Key<T> key,
+                                                         Function<? super Key<T>, ? extends CompletionStage<? extends T>> loader) {
+        Objects.requireNonNull(key, "Key can not be null");
+        Objects.requireNonNull(loader, "Loader can not be null");
+        T value = registry.get(key);
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        final CompletableFuture<T> load = new CompletableFuture<>();
+        CompletableFuture<?> existing = loads.putIfAbsent(key, load);
+        if (existing != null) {
+            return (CompletableFuture<T>) existing;
+        }
+        // A load may have completed between reading the value and registering this load
+        value = registry.get(key);
+        if (value != null) {
+            loads.remove(key, load);
+            load.complete(value);
+            return load;
+        }
+        CompletionStage<? extends T> stage;
+        try {
+            stage = Objects.requireNonNull(loader.apply(key), "Loader returned null");
+        } catch (RuntimeException | Error e) {
+            loads.remove(key, load);
+            load.completeExceptionally(e);
+            return load;
+        }
+        stage.whenComplete((loaded, failure) -> {
+            if (failure == null) {
+                try {
+                    if (loaded != null) {
+                        registry.put(key, key.getType().cast(loaded));
+                    }
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            loads.remove(key, load);
+            if (failure == null) {
+                load.complete(loaded);
+            } else {
+                load.completeExceptionally(failure);
+            }
+        });
+        return load;
+    }
+
+    /**
+     * Returns the number of loads in flight.
+     */
+    public int loading() {
+        return loads.size();
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        return registry.get(key);
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        registry.put(key, value);
+    }
+
+    @Override
+    public <T> void putAll(Registry r) {
+        registry.putAll(r);
+    }
+
+    @Override
+    public void putAll(Map<? extends Key<?>, ?> m) {
+        registry.putAll(m);
+    }
+
+    @Override
+    public void getAll(Batch batch) {
+        registry.getAll(batch);
+    }
+
+    @Override
+    public void putAll(Key<?>[] keys, Object[] values) {
+        registry.putAll(keys, values);
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        return registry.remove(key);
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> removeAll(Class<T> type) {
+        return registry.removeAll(type);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return registry.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return registry.size();
+    }
+
+    @Override
+    public void clear() {
+        registry.clear();
+    }
+
+    @Override
+    public void forEach(RegistryVisitor visitor) {
+        registry.forEach(visitor);
+    }
+
+    @Override
+    public <T> void forEachOfType(Class<T> type, BiConsumer<? super Key<? extends T>, ? super T> action) {
+        registry.forEachOfType(type, action);
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return registry.entrySet();
+    }
+
+    @Override
+    public Set<Key<?>> keySet() {
+        return registry.keySet();
+    }
+
+    @Override
+    public Collection<?> values() {
+        return registry.values();
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> entrySet(Class<T> type) {
+        return registry.entrySet(type);
+    }
+
+    @Override
+    public <T> Set<Key<? extends T>> keySet(Class<T> type) {
+        return registry.keySet(type);
+    }
+
+    @Override
+    public <T> Collection<? extends T> values(Class<T> type) {
+        return registry.values(type);
+    }
+}
@@ -0,0 +1,166 @@
+package org.luolong.collections.registry;
+
+import org.luolong.collections.registry.Registry.Key;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Keys and values of a batch lookup.
+ * <p/>
+ * The keys of a batch are fixed when it is created, while its values are filled in by
+ * {@link Registry#getAll(Batch)}. The values are type checked when they are filled in, so
+ * reading them from the batch does not check them again. A batch can be reused for any number
+ * of lookups, in any registry, but it is not thread-safe: every thread needs a batch of its own.
+ * <p/>
+ * Registries that look up a batch in one go, e.g. under a single lock, read its keys with
+ * {@link #key(int)} (in the order of {@link #slotOrder()} if their storage is indexed by slot)
+ * and write the values with {@link #set(int, Object)}.
+ *
+ * <pre>
+ * Batch batch = new Batch(USER, LOCALE, TIMEOUT);
+ * registry.getAll(batch);
+ * User user = batch.get(USER);
+ * </pre>
+ *
+ * @author Roland Tepp
+ * @see Registry#getAll(Key[])
+ */
+public final class Batch {
+
+    final Key<?>[] keys;
+    final Object[] values;
+
+    // Positions of the keys in the order of their slots, computed on first use
+    private int[] slotOrder;
+
+    /**
+     * Creates a new batch of the given keys, with all the values <code>null</code>.
+     *
+     * @throws NullPointerException if any of the keys is <code>null</code>
+     */
+    public Batch(Key<?>... keys) {
+        this.keys = keys.clone();
+        for (Key<?> key : this.keys) {
+            Objects.requireNonNull(key, "Key can not be null");
+        }
+        this.values = new Object[keys.length];
+    }
+
+    /**
+     * Returns the number of keys in this batch.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key at the given position.
+     */
+    public Key<?> key(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the value of the key at the given position.
+     */
+    public Object value(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the value of the given key.
+     * <p/>
+     * The keys are compared by identity first, so looking up the key instances the batch was
+     * created with is a scan of a few references.
+     *
+     * @throws IllegalArgumentException if the key is not part of this batch
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key<T> key) {
+        Key<?>[] keys = this.keys;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return (T) values[i];
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return (T) values[i];
+            }
+        }
+        throw new IllegalArgumentException("Key " + key + " is not part of the batch");
+    }
+
+    /**
+     * Sets the value of the key at the given position.
+     *
+     * @throws ClassCastException if the value is not an instance of the type of the key
+     */
+    public void set(int index, Object value) {
+        values[index] = keys[index].getType().cast(value);
+    }
+
+    /**
+     * Sets all the values to <code>null</code>.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+    }
+
+    /**
+     * Checks that every value of a batch update is an instance of the type of its key.
+     *
+     * @throws ClassCastException if a value is not an instance of the type of its key
+     * @throws IllegalArgumentException if the arrays are not of the same length
+     * @throws NullPointerException if any of the keys is <code>null</code>
+     */
+    public static void check(Key<?>[] keys, Object[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Got " + keys.length + " keys and " + values.length + " values");
+        }
+        for (int i = 0; i < keys.length; i++) {
+            Objects.requireNonNull(keys[i], "Key can not be null").getType().cast(values[i]);
+        }
+    }
+
+    /**
+     * Returns the positions of the keys ordered by the slots of the {@link IndexedKey indexed keys},
+     * followed by the positions of the other keys.
+     * <p/>
+     * The order is computed once and shared by all the lookups of this batch, so the returned
+     * array must not be modified.
+     */
+    public int[] slotOrder() {
+        int[] order = slotOrder;
+        if (order == null) {
+            Integer[] positions = new Integer[keys.length];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+            Arrays.sort(positions, (a, b) -> Integer.compare(slot(keys[a]), slot(keys[b])));
+            order = new int[positions.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = positions[i];
+            }
+            slotOrder = order;
+        }
+        return order;
+    }
+
+    private static int slot(Key<?> key) {
+        return key instanceof IndexedKey ? ((IndexedKey<?>) key).slot() : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(keys[i]).append('=').append(values[i]);
+        }
+        return result.append('}').toString();
+    }
+}
@@ -0,0 +1,588 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe registry with a bounded size, that can be used as a typed cache.
+ * <p/>
+ * When the total weight of the entries exceeds the {@link Builder#maximumSize(long) maximum size}
+ * (or {@link Builder#maximumWeight(long, Weigher) weight}), entries are evicted according to a
+ * segmented LRU policy: new entries start out in a probationary segment and are promoted to a
+ * protected segment when they are read again. Entries of the probationary segment are evicted
+ * first, so that a burst of entries that are used only once does not flush the frequently used
+ * entries out of the registry.
+ * <p/>
+ * Entries may also expire a fixed time after they were written, either by the
+ * {@link Builder#expireAfterWrite(long, TimeUnit) default} time to live of the registry or by the
+ * time to live given to {@link #put(Key, Object, long, TimeUnit)}. Expired entries are removed
+ * when they are accessed, evicted or {@link #cleanUp() cleaned up}, so the {@link #size() size}
+ * may include entries that have expired but have not been removed yet.
+ * <p/>
+ * Retrievals do not block: reads are recorded in lossy striped buffers and the eviction policy
+ * is updated from these buffers by whichever thread manages to take the eviction lock without
+ * waiting, or by the next write.
+ *
+ * @author Roland Tepp
+ */
+public class CachingRegistry extends AbstractRegistry {
+
+    /**
+     * Computes the weight of an entry.
+     */
+    @FunctionalInterface
+    public interface Weigher {
+        /**
+         * Returns the weight of the entry, which must not be negative.
+         */
+        int weigh(Key<?> key, Object value);
+    }
+
+    /**
+     * Listener of the entries removed from a caching registry.
+     */
+    public interface RemovalListener {
+        /**
+         * Notifies the listener of a removed entry.
+         * <p/>
+         * The listener is invoked by the thread that removed the entry, after the removal.
+         *
+         * @param key   key of the removed entry
+         * @param value value of the removed entry
+         * @param cause reason the entry was removed for
+         * @param <T>   type of the value of the removed entry
+         */
+        <T> void onRemoval(Key<T> key, T value, RemovalCause cause);
+    }
+
+    /**
+     * Reason an entry was removed from a caching registry.
+     */
+    public enum RemovalCause {
+        /** The entry was removed explicitly. */
+        EXPLICIT,
+        /** The value of the entry was replaced. */
+        REPLACED,
+        /** The entry was evicted because the registry exceeded its maximum size. */
+        SIZE,
+        /** The time to live of the entry expired. */
+        EXPIRED
+    }
+
+    /**
+     * Returns a new builder of caching registries.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Queues of the linked nodes
+    private static final int NONE = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    // Share of the maximum weight that the protected segment may occupy
+    private static final int PROTECTED_PERCENT = 80;
+
+    private static final int READ_BUFFER_SIZE = 32;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int READ_BUFFERS = Math.min(16,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final ConcurrentHashMap<Key<?>, Node> map = new ConcurrentHashMap<>();
+
+    private final long maximumWeight;
+    private final long maximumProtectedWeight;
+    private final Weigher weigher;
+    private final long expireAfterWriteNanos;
+    private final RemovalListener removalListener;
+    private final LongSupplier ticker;
+
+    // Guards the eviction queues and the weights
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Node probation = new Node(null, null, 0, 0);
+    private final Node protectedQueue = new Node(null, null, 0, 0);
+    private long weight;
+    private long protectedWeight;
+
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFERS];
+
+    private CachingRegistry(Builder builder) {
+        this.maximumWeight = builder.maximumWeight;
+        this.maximumProtectedWeight = builder.maximumWeight / 100 * PROTECTED_PERCENT
+                + builder.maximumWeight % 100 * PROTECTED_PERCENT / 100;
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.removalListener = builder.removalListener;
+        this.ticker = builder.ticker;
+        probation.prev = probation.next = probation;
+        protectedQueue.prev = protectedQueue.next = protectedQueue;
+        for (int i = 0; i < READ_BUFFERS; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        Node node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.isExpired(ticker.getAsLong())) {
+            if (map.remove(key, node)) {
+                retire(node, RemovalCause.EXPIRED);
+            }
+            return null;
+        }
+        recordRead(node);
+        return key.getType().cast(node.value);
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        put(key, value, expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this registry, replacing the
+     * default time to live of the registry with the given one for this entry.
+     *
+     * @param key        key with which the specified value is to be associated
+     * @param value      value to be associated with the specified key
+     * @param timeToLive time after which the entry expires, or <code>Long.MAX_VALUE</code>
+     *                   nanoseconds for an entry that never expires
+     * @param unit       unit of the time to live
+     * @throws NullPointerException if the specified key is <code>null</code>
+     */
+    public <T> void put(Key<T> key, T value, long timeToLive, TimeUnit unit) {
+        Objects.requireNonNull(key, "Key can not be null");
+        int w = weigher.weigh(key, key.getType().cast(value));
+        if (w < 0) {
+            throw new IllegalArgumentException("Weight can not be negative: " + w);
+        }
+        long nanos = unit.toNanos(timeToLive);
+        long expiresAt = nanos == Long.MAX_VALUE ? Long.MAX_VALUE : ticker.getAsLong() + nanos;
+        Node node = new Node(key, value, w, expiresAt);
+        Node old = map.put(key, node);
+
+        List<Node> removed = new ArrayList<>();
+        List<RemovalCause> causes = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            boolean promoted = false;
+            if (old != null) {
+                promoted = old.queue == PROTECTED;
+                unlink(old);
+                removed.add(old);
+                causes.add(old.isExpired(ticker.getAsLong()) ? RemovalCause.EXPIRED : RemovalCause.REPLACED);
+            }
+            // A concurrent write of the same key may have replaced the node already
+            if (map.get(key) == node) {
+                link(node, promoted ? PROTECTED : PROBATION);
+            }
+            drainReadBuffers();
+            evict(removed, causes);
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyRemovals(removed, causes);
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        Node node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        boolean expired = node.isExpired(ticker.getAsLong());
+        retire(node, expired ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT);
+        return expired ? null : key.getType().cast(node.value);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the total weight of the entries of this registry.
+     */
+    public long weight() {
+        evictionLock.lock();
+        try {
+            return weight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Key<?> key : map.keySet()) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Removes all the expired entries and applies all the pending reads to the eviction policy.
+     * <p/>
+     * This visits every entry of the registry. Expired entries are otherwise removed only when
+     * they are accessed or evicted.
+     */
+    public void cleanUp() {
+        long now = ticker.getAsLong();
+        for (Node node : map.values()) {
+            if (node.isExpired(now) && map.remove(node.key, node)) {
+                retire(node, RemovalCause.EXPIRED);
+            }
+        }
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                final Iterator<Node> iterator = map.values().iterator();
+                return new Iterator<Entry<?>>() {
+                    private Node next;
+                    private Node last;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && iterator.hasNext()) {
+                            Node node = iterator.next();
+                            if (!node.isExpired(ticker.getAsLong())) {
+                                next = node;
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<?> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next;
+                        next = null;
+                        return new NodeEntry<>(last);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        if (map.remove(last.key, last)) {
+                            retire(last, RemovalCause.EXPLICIT);
+                        }
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public void clear() {
+                CachingRegistry.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Unlinks the node removed from the map and notifies the removal listener.
+     */
+    private void retire(Node node, RemovalCause cause) {
+        evictionLock.lock();
+        try {
+            unlink(node);
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyRemoval(node, cause);
+    }
+
+    private void recordRead(Node node) {
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFERS - 1)];
+        if (buffer.add(node) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies the buffered reads to the eviction queues. Must be called with the eviction lock held.
+     */
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            buffer.drain(this);
+        }
+    }
+
+    /**
+     * Moves a node that has been read to the most recently used end of the protected segment.
+     */
+    private void onRead(Node node) {
+        if (node.queue == PROBATION) {
+            unlink(node);
+            link(node, PROTECTED);
+            // Demote the least recently used protected entries back to probation
+            while (protectedWeight > maximumProtectedWeight && protectedQueue.next != node) {
+                Node demoted = protectedQueue.next;
+                unlink(demoted);
+                link(demoted, PROBATION);
+            }
+        } else if (node.queue == PROTECTED) {
+            moveToTail(node, protectedQueue);
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the total weight is within the bounds.
+     * Must be called with the eviction lock held.
+     */
+    private void evict(List<Node> removed, List<RemovalCause> causes) {
+        long now = ticker.getAsLong();
+        while (weight > maximumWeight) {
+            Node victim = probation.next != probation ? probation.next : protectedQueue.next;
+            if (victim == protectedQueue) {
+                break;
+            }
+            unlink(victim);
+            if (map.remove(victim.key, victim)) {
+                removed.add(victim);
+                causes.add(victim.isExpired(now) ? RemovalCause.EXPIRED : RemovalCause.SIZE);
+            }
+        }
+    }
+
+    private void link(Node node, int queue) {
+        Node head = queue == PROTECTED ? protectedQueue : probation;
+        node.queue = queue;
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+        weight += node.weight;
+        if (queue == PROTECTED) {
+            protectedWeight += node.weight;
+        }
+    }
+
+    private void unlink(Node node) {
+        if (node.queue == NONE) {
+            return;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+        weight -= node.weight;
+        if (node.queue == PROTECTED) {
+            protectedWeight -= node.weight;
+        }
+        node.queue = NONE;
+    }
+
+    private static void moveToTail(Node node, Node head) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    private void notifyRemovals(List<Node> removed, List<RemovalCause> causes) {
+        for (int i = 0; i < removed.size(); i++) {
+            notifyRemoval(removed.get(i), causes.get(i));
+        }
+    }
+
+    private void notifyRemoval(Node node, RemovalCause cause) {
+        if (removalListener != null) {
+            notifyRemoval(node.key, node.value, cause);
+        }
+    }
+
+    private <T> void notifyRemoval(Key<T> key, Object value, RemovalCause cause) {
+        removalListener.onRemoval(key, key.getType().cast(value), cause);
+    }
+
+    /**
+     * Entry of the registry, linked into one of the eviction queues.
+     */
+    private static final class Node {
+        final Key<?> key;
+        final Object value;
+        final int weight;
+        final long expiresAt;
+
+        // Guarded by the eviction lock
+        int queue = NONE;
+        Node prev;
+        Node next;
+
+        Node(Key<?> key, Object value, int weight, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Lossy buffer of the nodes that have been read.
+     * <p/>
+     * When the buffer is full, the oldest reads are overwritten by the new ones. Losing some
+     * reads only makes the eviction policy slightly less accurate.
+     */
+    private static final class ReadBuffer {
+        private final AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong writes = new AtomicLong();
+        // Number of writes at the last drain
+        private volatile long drained;
+
+        /**
+         * Adds the node to the buffer and returns <code>true</code> if the buffer should be drained.
+         */
+        boolean add(Node node) {
+            long index = writes.getAndIncrement();
+            nodes.lazySet((int) index & READ_BUFFER_MASK, node);
+            return index - drained >= READ_BUFFER_SIZE / 2;
+        }
+
+        void drain(CachingRegistry registry) {
+            drained = writes.get();
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                Node node = nodes.getAndSet(i, null);
+                if (node != null) {
+                    registry.onRead(node);
+                }
+            }
+        }
+    }
+
+    private class NodeEntry<T> implements Entry<T> {
+        private final Node node;
+
+        NodeEntry(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Key<T> getKey() {
+            return (Key<T>) node.key;
+        }
+
+        @Override
+        public T getValue() {
+            return getKey().getType().cast(node.value);
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = getValue();
+            put(getKey(), value);
+            return old;
+        }
+    }
+
+    /**
+     * Builder of caching registries.
+     */
+    public static final class Builder {
+        private long maximumWeight = Long.MAX_VALUE;
+        private Weigher weigher = (key, value) -> 1;
+        private long expireAfterWriteNanos = Long.MAX_VALUE;
+        private RemovalListener removalListener;
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        /**
+         * Limits the number of entries of the registry.
+         */
+        public Builder maximumSize(long maximumSize) {
+            return maximumWeight(maximumSize, (key, value) -> 1);
+        }
+
+        /**
+         * Limits the total weight of the entries of the registry, as computed by the given weigher.
+         */
+        public Builder maximumWeight(long maximumWeight, Weigher weigher) {
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("Maximum weight can not be negative: " + maximumWeight);
+            }
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher, "Weigher can not be null");
+            return this;
+        }
+
+        /**
+         * Sets the default time to live of the entries, measured from the last write of the entry.
+         */
+        public Builder expireAfterWrite(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Duration can not be negative: " + duration);
+            }
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Sets the listener notified of all the removed entries.
+         */
+        public Builder removalListener(RemovalListener removalListener) {
+            this.removalListener = Objects.requireNonNull(removalListener, "Removal listener can not be null");
+            return this;
+        }
+
+        /**
+         * Sets the source of the time in nanoseconds, {@link System#nanoTime()} by default.
+         */
+        public Builder ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "Ticker can not be null");
+            return this;
+        }
+
+        public CachingRegistry build() {
+            return new CachingRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe implementation of Registry using {@code java.util.concurrent.ConcurrentHashMap}
+ * for internal storage of key-value pairs.
+ * <p/>
+ * Retrievals do not block and are not blocked by updates, while updates to different keys
+ * contend only on the bins of the backing map. In addition to the {@link Registry} operations,
+ * this registry supports atomic {@link #putIfAbsent(Key, Object) putIfAbsent},
+ * {@link #computeIfAbsent(Key, Function) computeIfAbsent} and {@link #replace(Key, Object) replace}
+ * operations.
+ * <p/>
+ * Unlike {@code ConcurrentHashMap}, this registry permits <code>null</code> values. A key that
+ * is mapped to <code>null</code> is considered to be present in the registry.
+ * <p/>
+ * Values that are expensive to create can be registered with {@link #putLazy(Key, Supplier)}.
+ * Such values are created on first access and then stored like any other value.
+ * <p/>
+ * Batch updates with {@link #putAll(Key[], Object[])} are atomic with respect to batch lookups
+ * with {@link #getAll(Batch)}: a batch lookup sees either none or all of the values of a batch
+ * update. Only the batch operations share a {@code StampedLock} for this, the batch updates
+ * exclusively and the batch lookups optimistically, so single key operations never touch it.
+ *
+ * @author Roland Tepp
+ */
+public class ConcurrentRegistry extends AbstractRegistry {
+
+    // Stands in for null values, which ConcurrentHashMap does not permit
+    private static final Object NULL = new Object() {
+        @Override
+        public String toString() {
+            return "null";
+        }
+    };
+
+    // Optimistic attempts of a batch lookup, before it waits for the batch updates in progress
+    private static final int OPTIMISTIC_LOOKUPS = 3;
+
+    // Internal map storage of registry entries
+    private final ConcurrentHashMap<Key<?>, Object> map;
+
+    // Whether iterating over entries and values creates the lazy values
+    private final boolean initializeOnIteration;
+
+    // Held in write mode by the batch updates, and validated or held in read mode by the batch lookups
+    private final StampedLock lock = new StampedLock();
+
+    public ConcurrentRegistry() {
+        this(16, true);
+    }
+
+    public ConcurrentRegistry(int initialCapacity) {
+        this(initialCapacity, true);
+    }
+
+    /**
+     * Creates a new registry.
+     *
+     * @param initialCapacity       the initial capacity of the registry
+     * @param initializeOnIteration whether the lazy values are created when iterating over the
+     *                              {@link #entrySet() entries} or {@link #values() values} of the
+     *                              registry. If <code>false</code>, entries of lazy values that have
+     *                              not been created yet are skipped by these views (and their typed
+     *                              counterparts), and not counted by their sizes, while the
+     *                              {@link #keySet() key set} and {@link #size() size} of the registry
+     *                              still include them.
+     */
+    public ConcurrentRegistry(int initialCapacity, boolean initializeOnIteration) {
+        this.map = new ConcurrentHashMap<>(initialCapacity);
+        this.initializeOnIteration = initializeOnIteration;
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        Object value = map.get(key);
+        if (value instanceof Lazy) {
+            value = initialize(key, (Lazy) value);
+        }
+        return key.getType().cast(unmask(value));
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        map.put(Objects.requireNonNull(key, "Key can not be null"), mask(value));
+    }
+
+    /**
+     * Looks up the values of the keys of the batch.
+     * <p/>
+     * The lookup sees either none or all of the values of any concurrent {@link #putAll(Key[], Object[])
+     * batch update}. It is retried if a batch update takes place meanwhile, and waits for the batch
+     * updates to complete only if it is retried too often. Single key updates are not excluded, so
+     * they may or may not be seen by the lookup. Lazy values of the batch are created after the lookup.
+     */
+    @Override
+    public void getAll(Batch batch) {
+        Key<?>[] keys = batch.keys;
+        Object[] values = batch.values;
+        boolean consistent = false;
+        for (int attempt = 0; attempt < OPTIMISTIC_LOOKUPS && !consistent; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                for (int i = 0; i < keys.length; i++) {
+                    values[i] = map.get(keys[i]);
+                }
+                consistent = lock.validate(stamp);
+            }
+        }
+        if (!consistent) {
+            long stamp = lock.readLock();
+            try {
+                for (int i = 0; i < keys.length; i++) {
+                    values[i] = map.get(keys[i]);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = value(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Associates every key with the value at the same position, atomically.
+     * <p/>
+     * All the values are type checked before any of them is stored. Concurrent {@link #getAll(Batch)
+     * batch lookups} see either none or all of the values, while single key operations are not
+     * excluded.
+     */
+    @Override
+    public void putAll(Key<?>[] keys, Object[] values) {
+        Batch.check(keys, values);
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], mask(values[i]));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Associates the value supplied by the given supplier with the specified key.
+     * <p/>
+     * The supplier is invoked at most once, on the first retrieval of the value. Concurrent
+     * first retrievals of the same key wait for the value to be created, but do not block
+     * any other operations on this registry. If the supplier throws an exception, the
+     * exception is propagated to the caller and the next retrieval invokes the supplier again.
+     * <p/>
+     * Once created, retrieving the value is as cheap as retrieving any other value.
+     * Removing or replacing a value that has not been created yet does not create it.
+     *
+     * @param key      key with which the supplied value is to be associated
+     * @param supplier supplier of the value
+     * @throws NullPointerException if the specified key or supplier is <code>null</code>
+     */
+    public <T> void putLazy(Key<T> key, Supplier<? extends T> supplier) {
+        map.put(Objects.requireNonNull(key, "Key can not be null"), new Lazy(supplier));
+    }
+
+    /**
+     * If the specified key is not already present in this registry, associates it with
+     * the given value.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key, or <code>null</code>
+     *         if there was no mapping for the key (or the key was mapped to <code>null</code>)
+     * @throws NullPointerException if the specified key is <code>null</code>
+     */
+    public <T> T putIfAbsent(Key<T> key, T value) {
+        return value(key, map.putIfAbsent(key, mask(value)));
+    }
+
+    /**
+     * If the specified key is not already present in this registry, attempts to compute
+     * its value using the given mapping function and enters it into this registry unless
+     * <code>null</code>.
+     * <p/>
+     * The entire method invocation is performed atomically, so the function is applied
+     * at most once per key. Some attempted update operations on this registry by other
+     * threads may be blocked while computation is in progress, so the computation should
+     * be short and simple, and must not attempt to update any other mappings of this registry.
+     *
+     * @param key             key with which the computed value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with the specified key,
+     *         or <code>null</code> if the computed value is <code>null</code>
+     * @throws NullPointerException if the specified key or mappingFunction is <code>null</code>
+     */
+    public <T> T computeIfAbsent(final Key<T> key, final Function<? super Key<T>, ? extends T> mappingFunction) {
+        Objects.requireNonNull(mappingFunction, "Mapping function can not be null");
+        Object value = map.get(key);
+        if (value == null) {
+            value = map.computeIfAbsent(key, k -> mappingFunction.apply(key));
+        }
+        return value(key, value);
+    }
+
+    /**
+     * Replaces the entry for a key only if currently mapped to some value.
+     *
+     * @param key   key with which the specified value is associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key, or <code>null</code>
+     *         if there was no mapping for the key (or the key was mapped to <code>null</code>)
+     * @throws NullPointerException if the specified key is <code>null</code>
+     */
+    public <T> T replace(Key<T> key, T value) {
+        return peek(key, map.replace(key, mask(value)));
+    }
+
+    /**
+     * Replaces the entry for a key only if currently mapped to a given value.
+     *
+     * @param key      key with which the specified value is associated
+     * @param oldValue value expected to be associated with the specified key
+     * @param newValue value to be associated with the specified key
+     * @return <code>true</code> if the value was replaced
+     * @throws NullPointerException if the specified key is <code>null</code>
+     */
+    public <T> boolean replace(Key<T> key, T oldValue, T newValue) {
+        Object value = map.get(key);
+        if (value instanceof Lazy) {
+            initialize(key, (Lazy) value);
+        }
+        return map.replace(key, mask(oldValue), mask(newValue));
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        return peek(key, map.remove(key));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Set<Key<?>> keySet() {
+        return map.keySet();
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        final Set<Map.Entry<Key<?>, Object>> entries = map.entrySet();
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                final Iterator<Map.Entry<Key<?>, Object>> iterator = entries.iterator();
+                return new Iterator<Entry<?>>() {
+                    private Map.Entry<Key<?>, Object> next;
+                    private Key<?> last;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && iterator.hasNext()) {
+                            Map.Entry<Key<?>, Object> entry = iterator.next();
+                            if (!isSkipped(entry.getValue())) {
+                                next = entry;
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<?> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<?> entry = new MapEntry<Object>(next);
+                        last = next.getKey();
+                        next = null;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        // The iterator of the map may have moved past the last entry in hasNext()
+                        map.remove(last);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                if (initializeOnIteration) {
+                    return entries.size();
+                }
+                int size = 0;
+                for (Object value : map.values()) {
+                    if (!isSkipped(value)) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                entries.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns whether iterating over the entries skips the entry of the value, which is the case for
+     * the lazy values that have not been created yet, unless they are created on iteration.
+     */
+    private boolean isSkipped(Object value) {
+        return !initializeOnIteration && value instanceof Lazy && !((Lazy) value).isInitialized();
+    }
+
+    /**
+     * Creates the lazy value, if not created yet, and stores it in place of the lazy placeholder.
+     */
+    private Object initialize(Key<?> key, Lazy lazy) {
+        Object value = lazy.get();
+        map.replace(key, lazy, value);
+        return value;
+    }
+
+    /**
+     * Returns the value of the key, creating it if the value is lazy.
+     */
+    private <T> T value(Key<T> key, Object value) {
+        if (value instanceof Lazy) {
+            value = initialize(key, (Lazy) value);
+        }
+        return key.getType().cast(unmask(value));
+    }
+
+    /**
+     * Returns the value of the key or <code>null</code> if the value is lazy and not created yet.
+     */
+    private static <T> T peek(Key<T> key, Object value) {
+        if (value instanceof Lazy) {
+            value = ((Lazy) value).value;
+        }
+        return key.getType().cast(unmask(value));
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NULL : value;
+    }
+
+    private static Object unmask(Object value) {
+        return value == NULL ? null : value;
+    }
+
+    /**
+     * Placeholder of a value that is created on first access.
+     */
+    private static final class Lazy {
+        private final Supplier<?> supplier;
+        // The created (masked) value, null until created
+        private volatile Object value;
+        private final Lock lock = new ReentrantLock();
+
+        Lazy(Supplier<?> supplier) {
+            this.supplier = Objects.requireNonNull(supplier, "Supplier can not be null");
+        }
+
+        boolean isInitialized() {
+            return value != null;
+        }
+
+        Object get() {
+            Object result = value;
+            if (result == null) {
+                // A lock rather than a monitor, so that virtual threads waiting for the value do not pin their carriers
+                Lock lock = this.lock;
+                lock.lock();
+                try {
+                    result = value;
+                    if (result == null) {
+                        value = result = mask(supplier.get());
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return result;
+        }
+    }
+
+    private class MapEntry<T> implements Entry<T> {
+        private final Map.Entry<Key<?>, Object> entry;
+
+        MapEntry(Map.Entry<Key<?>, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Key<T> getKey() {
+            return (Key<T>) entry.getKey();
+        }
+
+        @Override
+        public T getValue() {
+            return value(getKey(), entry.getValue());
+        }
+
+        @Override
+        public T setValue(T value) {
+            return peek(getKey(), entry.setValue(mask(getKey().getType().cast(value))));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable implementation of Registry.
+ * <p/>
+ * Keys and values are laid out in two flat parallel arrays, addressed by an open-addressed
+ * (linear probing) hash table that is computed once when the registry is created. Compared to
+ * a {@code java.util.HashMap} based registry this avoids the per-entry node objects and the
+ * pointer chasing between them, which reduces the memory footprint and improves cache locality
+ * of lookups.
+ * <p/>
+ * All the mutating operations throw <code>UnsupportedOperationException</code>.
+ *
+ * @author Roland Tepp
+ * @see Registry#copyOf(Registry)
+ */
+public final class FrozenRegistry extends AbstractRegistry {
+
+    private static final FrozenRegistry EMPTY = new FrozenRegistry(new Key<?>[1], new Object[1], 0);
+
+    // Keys and values of the registry entries, indexed by the position of the key in the hash table
+    private final Key<?>[] keys;
+    private final Object[] values;
+    private final int size;
+
+    private FrozenRegistry(Key<?>[] keys, Object[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Returns an immutable copy of the given registry.
+     * <p/>
+     * The entries of the registry are copied before the hash table is sized, so a registry that
+     * is modified concurrently is copied as its entry set iterates over it.
+     *
+     * @param registry registry whose mappings are to be copied
+     * @return an immutable registry containing the mappings of the given registry
+     * @throws NullPointerException if the given registry is <code>null</code>
+     */
+    public static FrozenRegistry copyOf(Registry registry) {
+        if (registry instanceof FrozenRegistry) {
+            return (FrozenRegistry) registry;
+        }
+        // The size only presizes the snapshot, the table is sized by the entries actually iterated over
+        List<Key<?>> entryKeys = new ArrayList<>(registry.size());
+        List<Object> entryValues = new ArrayList<>(registry.size());
+        for (Entry<?> entry : registry.entrySet()) {
+            entryKeys.add(entry.getKey());
+            entryValues.add(entry.getValue());
+        }
+        int size = entryKeys.size();
+        if (size == 0) {
+            return EMPTY;
+        }
+        // Keep the load factor at or below 1/2 so that probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 2;
+        Key<?>[] keys = new Key<?>[capacity];
+        Object[] values = new Object[capacity];
+        int count = 0;
+        for (int e = 0; e < size; e++) {
+            Key<?> key = entryKeys.get(e);
+            int i = indexFor(key, capacity - 1);
+            while (keys[i] != null && !keys[i].equals(key)) {
+                i = (i + 1) & (capacity - 1);
+            }
+            if (keys[i] == null) {
+                keys[i] = key;
+                count++;
+            }
+            values[i] = entryValues.get(e);
+        }
+        return new FrozenRegistry(keys, values, count);
+    }
+
+    private static int indexFor(Object key, int mask) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        Key<?>[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = indexFor(key, mask); ; i = (i + 1) & mask) {
+            Key<?> k = keys[i];
+            if (k == null) {
+                return null;
+            }
+            if (k == key || k.equals(key)) {
+                return key.getType().cast(values[i]);
+            }
+        }
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        throw new UnsupportedOperationException("Registry is immutable");
+    }
+
+    @Override
+    public <T> void putAll(Registry r) {
+        throw new UnsupportedOperationException("Registry is immutable");
+    }
+
+    @Override
+    public void putAll(Map<? extends Key<?>, ?> m) {
+        throw new UnsupportedOperationException("Registry is immutable");
+    }
+
+    @Override
+    public void putAll(Key<?>[] keys, Object[] values) {
+        throw new UnsupportedOperationException("Registry is immutable");
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        throw new UnsupportedOperationException("Registry is immutable");
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> removeAll(Class<T> type) {
+        throw new UnsupportedOperationException("Registry is immutable");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Registry is immutable");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<?>> {
+        private int next = advance(0);
+
+        private int advance(int from) {
+            while (from < keys.length && keys[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < keys.length;
+        }
+
+        @Override
+        public Entry<?> next() {
+            if (next >= keys.length) {
+                throw new NoSuchElementException();
+            }
+            Entry<?> entry = newEntry(keys[next], values[next]);
+            next = advance(next + 1);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Registry is immutable");
+        }
+    }
+
+    private static <T> Entry<T> newEntry(final Key<T> key, final Object value) {
+        return new Entry<T>() {
+            @Override
+            public Key<T> getKey() {
+                return key;
+            }
+
+            @Override
+            public T getValue() {
+                return key.getType().cast(value);
+            }
+
+            @Override
+            public T setValue(T value) {
+                throw new UnsupportedOperationException("Registry is immutable");
+            }
+        };
+    }
+}
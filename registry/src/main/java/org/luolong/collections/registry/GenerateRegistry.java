@@ -0,0 +1,34 @@
+package org.luolong.collections.registry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class holding <code>static final</code> {@link Registry.Key key} constants, for which a
+ * {@link StaticRegistry} is generated at compile time.
+ * <p/>
+ * The generated registry has a field for every key constant of the annotated class, so that
+ * <code>get</code> and <code>put</code> of these keys compile down to reading and writing the
+ * field once inlined at a call site. The generated class is placed in the package of the annotated
+ * class, so the key constants must not be private.
+ * <p/>
+ * The registry is generated by the annotation processor of the <code>registry-processor</code>
+ * module, which needs to be on the annotation processor path of the compiler.
+ *
+ * @author Roland Tepp
+ * @see StaticRegistry
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateRegistry {
+
+    /**
+     * Simple name of the generated registry class, the name of the annotated class followed by
+     * <code>Registry</code> by default.
+     */
+    String value() default "";
+}
@@ -16,9 +16,11 @@ import org.luolong.collections.registry.Registry.Key;
 public class IdentityKey<T> implements Key<T> {
 
     private final Class<T> type;
+    private final int hash;
 
     public IdentityKey(Class<T> type) {
         this.type = type;
+        this.hash = System.identityHashCode(this);
     }
 
     public Class<T> getType() {
@@ -32,7 +34,7 @@ public class IdentityKey<T> implements Key<T> {
 
     @Override
     public int hashCode() {
-        return System.identityHashCode(this);
+        return hash;
     }
 
     public String toString() {
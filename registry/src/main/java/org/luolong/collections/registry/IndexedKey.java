@@ -0,0 +1,62 @@
+package org.luolong.collections.registry;
+
+import org.luolong.collections.registry.Registry.Key;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Typed registry key with a dense integer slot index.
+ * <p/>
+ * Every instance of this key is assigned a unique slot index at creation time, that
+ * registries like {@link ArrayRegistry} may use to store the mapped value directly in
+ * an array without hashing the key. Slot indexes are never reused, so indexed keys are
+ * meant to be created once and kept around (usually as <code>static final</code> constants)
+ * rather than created anew for every lookup.
+ * <p/>
+ * The equality of this key implementation is based on the identity of the instance of this key.
+ *
+ * @author Roland Tepp
+ * @see Keys#indexed(Class)
+ */
+public final class IndexedKey<T> implements Key<T> {
+
+    private static final AtomicInteger slots = new AtomicInteger();
+
+    private final Class<T> type;
+    private final int slot;
+
+    IndexedKey(Class<T> type) {
+        this.type = type;
+        this.slot = slots.getAndIncrement();
+        if (slot < 0) {
+            throw new IllegalStateException("Indexed key slots exhausted");
+        }
+    }
+
+    @Override
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the slot index of this key.
+     */
+    int slot() {
+        return slot;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj;
+    }
+
+    @Override
+    public int hashCode() {
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedKey<" + type.getSimpleName() + ">#" + slot;
+    }
+}
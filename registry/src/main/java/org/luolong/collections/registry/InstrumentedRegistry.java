@@ -0,0 +1,478 @@
+package org.luolong.collections.registry;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Registry decorator that records metrics of the decorated registry per key type.
+ * <p/>
+ * For every {@link Key#getType() key type} the registry counts the hits and misses of
+ * {@link #get(Key)} (a <code>null</code> value counts as a miss), the puts and the removals, and
+ * records the latency of <code>get</code> in a histogram of exponentially growing buckets, four
+ * per power of two, so the recorded latencies are accurate to within 25%. All the counters are
+ * striped {@link LongAdder}s, so that concurrent recording does not contend.
+ * <p/>
+ * Measuring the latency is more expensive than counting. In the sampling mode
+ * ({@link #InstrumentedRegistry(Registry, int)}) only a random subset of the lookups is timed,
+ * while the counters stay exact.
+ * <p/>
+ * Metrics are pulled with {@link #snapshot()} or through JMX by registering the {@link #mxBean()}.
+ * Only the operations made through this registry itself are recorded, not the ones made through
+ * its views. This registry is thread-safe if the decorated registry is.
+ *
+ * @author Roland Tepp
+ */
+public class InstrumentedRegistry extends AbstractRegistry {
+
+    // Four buckets per power of two, up to 2^40 nanoseconds
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * 40;
+
+    private final Registry registry;
+    private final int sampleInterval;
+    private final ConcurrentHashMap<Class<?>, TypeMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new registry, that times every lookup.
+     *
+     * @param registry registry to decorate
+     */
+    public InstrumentedRegistry(Registry registry) {
+        this(registry, 1);
+    }
+
+    /**
+     * Creates a new registry, that times one in <code>sampleInterval</code> lookups on average.
+     *
+     * @param registry       registry to decorate
+     * @param sampleInterval average number of lookups per timed lookup
+     */
+    public InstrumentedRegistry(Registry registry, int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval must be positive: " + sampleInterval);
+        }
+        this.registry = Objects.requireNonNull(registry, "Registry can not be null");
+        this.sampleInterval = sampleInterval;
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        TypeMetrics typeMetrics = metrics(key.getType());
+        T value;
+        if (sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0) {
+            long start = System.nanoTime();
+            value = registry.get(key);
+            typeMetrics.latency[bucket(System.nanoTime() - start)].increment();
+        } else {
+            value = registry.get(key);
+        }
+        (value != null ? typeMetrics.hits : typeMetrics.misses).increment();
+        return value;
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        registry.put(key, value);
+        metrics(key.getType()).puts.increment();
+    }
+
+    @Override
+    public <T> void putAll(Registry r) {
+        registry.putAll(r);
+        r.forEach(new RegistryVisitor() {
+            @Override
+            public <T> void visit(Key<T> key, T value) {
+                metrics(key.getType()).puts.increment();
+            }
+        });
+    }
+
+    @Override
+    public void putAll(Map<? extends Key<?>, ?> m) {
+        registry.putAll(m);
+        for (Key<?> key : m.keySet()) {
+            metrics(key.getType()).puts.increment();
+        }
+    }
+
+    /**
+     * Looks up the batch in the instrumented registry, counting the hits and misses of every key.
+     * Batch lookups are not timed.
+     */
+    @Override
+    public void getAll(Batch batch) {
+        registry.getAll(batch);
+        for (int i = 0; i < batch.keys.length; i++) {
+            TypeMetrics typeMetrics = metrics(batch.keys[i].getType());
+            (batch.values[i] != null ? typeMetrics.hits : typeMetrics.misses).increment();
+        }
+    }
+
+    @Override
+    public void putAll(Key<?>[] keys, Object[] values) {
+        registry.putAll(keys, values);
+        for (Key<?> key : keys) {
+            metrics(key.getType()).puts.increment();
+        }
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        T old = registry.remove(key);
+        metrics(key.getType()).removes.increment();
+        return old;
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> removeAll(Class<T> type) {
+        Set<Entry<? extends T>> removed = registry.removeAll(type);
+        for (Entry<? extends T> entry : removed) {
+            metrics(entry.getKey().getType()).removes.increment();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return registry.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return registry.size();
+    }
+
+    @Override
+    public void clear() {
+        registry.clear();
+    }
+
+    @Override
+    public void forEach(RegistryVisitor visitor) {
+        registry.forEach(visitor);
+    }
+
+    @Override
+    public <T> void forEachOfType(Class<T> type, BiConsumer<? super Key<? extends T>, ? super T> action) {
+        registry.forEachOfType(type, action);
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return registry.entrySet();
+    }
+
+    @Override
+    public Set<Key<?>> keySet() {
+        return registry.keySet();
+    }
+
+    @Override
+    public Collection<?> values() {
+        return registry.values();
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> entrySet(Class<T> type) {
+        return registry.entrySet(type);
+    }
+
+    @Override
+    public <T> Set<Key<? extends T>> keySet(Class<T> type) {
+        return registry.keySet(type);
+    }
+
+    @Override
+    public <T> Collection<? extends T> values(Class<T> type) {
+        return registry.values(type);
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded so far.
+     * <p/>
+     * The counters are read one by one while the registry may be in use, so a snapshot of a registry
+     * that is being modified concurrently is not necessarily consistent.
+     */
+    public Snapshot snapshot() {
+        Map<Class<?>, TypeSnapshot> types = new LinkedHashMap<>();
+        for (Map.Entry<Class<?>, TypeMetrics> entry : metrics.entrySet()) {
+            types.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new Snapshot(registry.size(), types);
+    }
+
+    /**
+     * Returns an MXBean exposing the metrics of this registry, to be registered with an MBean server:
+     * <pre>
+     * ManagementFactory.getPlatformMBeanServer().registerMBean(registry.mxBean(),
+     *         new ObjectName("org.luolong.collections.registry:type=Registry,name=tenants"));
+     * </pre>
+     */
+    public RegistryMetricsMXBean mxBean() {
+        return new RegistryMetricsMXBean() {
+            @Override
+            public int getSize() {
+                return size();
+            }
+
+            @Override
+            public long getHitCount() {
+                return snapshot().getHitCount();
+            }
+
+            @Override
+            public long getMissCount() {
+                return snapshot().getMissCount();
+            }
+
+            @Override
+            public double getHitRatio() {
+                return snapshot().getHitRatio();
+            }
+
+            @Override
+            public Map<String, TypeSnapshot> getTypes() {
+                Map<String, TypeSnapshot> types = new LinkedHashMap<>();
+                for (Map.Entry<Class<?>, TypeSnapshot> entry : snapshot().getTypes().entrySet()) {
+                    types.put(entry.getKey().getName(), entry.getValue());
+                }
+                return types;
+            }
+        };
+    }
+
+    private TypeMetrics metrics(Class<?> type) {
+        TypeMetrics typeMetrics = metrics.get(type);
+        if (typeMetrics == null) {
+            typeMetrics = metrics.computeIfAbsent(type, t -> new TypeMetrics());
+        }
+        return typeMetrics;
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+    }
+
+    /**
+     * Returns the smallest latency, in nanoseconds, that is recorded in the given bucket.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * MXBean exposing the metrics of an instrumented registry.
+     *
+     * @see InstrumentedRegistry#mxBean()
+     */
+    public interface RegistryMetricsMXBean {
+        int getSize();
+
+        long getHitCount();
+
+        long getMissCount();
+
+        double getHitRatio();
+
+        /**
+         * Returns the metrics per key type, keyed by the name of the type.
+         */
+        Map<String, TypeSnapshot> getTypes();
+    }
+
+    private static final class TypeMetrics {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder puts = new LongAdder();
+        final LongAdder removes = new LongAdder();
+        final LongAdder[] latency = new LongAdder[BUCKETS];
+
+        TypeMetrics() {
+            for (int i = 0; i < BUCKETS; i++) {
+                latency[i] = new LongAdder();
+            }
+        }
+
+        TypeSnapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = latency[i].sum();
+            }
+            return new TypeSnapshot(hits.sum(), misses.sum(), puts.sum(), removes.sum(), counts);
+        }
+    }
+
+    /**
+     * Metrics of an instrumented registry at some point in time.
+     */
+    public static final class Snapshot {
+        private final int size;
+        private final Map<Class<?>, TypeSnapshot> types;
+
+        Snapshot(int size, Map<Class<?>, TypeSnapshot> types) {
+            this.size = size;
+            this.types = Collections.unmodifiableMap(types);
+        }
+
+        /**
+         * Returns the size of the registry.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the metrics per key type.
+         */
+        public Map<Class<?>, TypeSnapshot> getTypes() {
+            return types;
+        }
+
+        public long getHitCount() {
+            long hits = 0;
+            for (TypeSnapshot type : types.values()) {
+                hits += type.getHitCount();
+            }
+            return hits;
+        }
+
+        public long getMissCount() {
+            long misses = 0;
+            for (TypeSnapshot type : types.values()) {
+                misses += type.getMissCount();
+            }
+            return misses;
+        }
+
+        /**
+         * Returns the share of the lookups that found a value, or <code>NaN</code> if there were no lookups.
+         */
+        public double getHitRatio() {
+            return ratio(getHitCount(), getMissCount());
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{size=" + size + ", types=" + types + '}';
+        }
+    }
+
+    /**
+     * Metrics of the entries of a key type at some point in time.
+     */
+    public static final class TypeSnapshot {
+        private final long hitCount;
+        private final long missCount;
+        private final long putCount;
+        private final long removeCount;
+        private final long[] latencyCounts;
+
+        TypeSnapshot(long hitCount, long missCount, long putCount, long removeCount, long[] latencyCounts) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.putCount = putCount;
+            this.removeCount = removeCount;
+            this.latencyCounts = latencyCounts;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * Returns the share of the lookups that found a value, or <code>NaN</code> if there were no lookups.
+         */
+        public double getHitRatio() {
+            return ratio(hitCount, missCount);
+        }
+
+        public long getPutCount() {
+            return putCount;
+        }
+
+        public long getRemoveCount() {
+            return removeCount;
+        }
+
+        /**
+         * Returns the number of lookups whose latency was recorded.
+         */
+        public long getLatencyCount() {
+            long count = 0;
+            for (long bucket : latencyCounts) {
+                count += bucket;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the latency in nanoseconds, that the given share of the recorded lookups did not exceed,
+         * or <code>0</code> if there are no recorded lookups.
+         * <p/>
+         * The latency is the lower bound of the histogram bucket the percentile falls into.
+         *
+         * @param percentile percentile between <code>0</code> and <code>100</code>
+         */
+        public long getLatencyPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+            }
+            long count = getLatencyCount();
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < latencyCounts.length; i++) {
+                seen += latencyCounts[i];
+                if (seen >= rank) {
+                    return lowerBound(i);
+                }
+            }
+            return 0;
+        }
+
+        public long getLatencyMedian() {
+            return getLatencyPercentile(50);
+        }
+
+        public long getLatency99thPercentile() {
+            return getLatencyPercentile(99);
+        }
+
+        public long getLatency999thPercentile() {
+            return getLatencyPercentile(99.9);
+        }
+
+        @Override
+        public String toString() {
+            return "TypeSnapshot{hits=" + hitCount + ", misses=" + missCount + ", puts=" + putCount
+                    + ", removes=" + removeCount + ", p50=" + getLatencyMedian() + "ns, p99="
+                    + getLatency99thPercentile() + "ns}";
+        }
+    }
+
+    private static double ratio(long hits, long misses) {
+        long lookups = hits + misses;
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+}
@@ -1,13 +1,38 @@
 package org.luolong.collections.registry;
 
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Common registry key generation.
  */
 public class Keys {
     private Keys() {/* No instantiation allowed */}
 
+    // Canonical type keys, one per type
+    private static final ClassValue<TypeKey<?>> typeKeys = new ClassValue<TypeKey<?>>() {
+        @Override
+        protected TypeKey<?> computeValue(Class<?> type) {
+            return newTypeKey(type);
+        }
+    };
+
+    // Canonical named keys, by type and name
+    private static final ClassValue<ConcurrentMap<String, NamedKey<?>>> namedKeys =
+            new ClassValue<ConcurrentMap<String, NamedKey<?>>>() {
+                @Override
+                protected ConcurrentMap<String, NamedKey<?>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    /**
+     * Returns the key of the given type. Keys of the same type are shared.
+     */
+    @SuppressWarnings("unchecked")
     public static <T> Registry.Key<T> of(Class<T> type) {
-        return new TypeKey<T>(type);
+        return (Registry.Key<T>) typeKeys.get(type);
     }
 
     public static <T> IdentityKey<T> identity(Class type) {
@@ -17,4 +42,39 @@ public class Keys {
     public static <T> NamedKey<T> of(Class<T> type, String name) {
         return new NamedKey<T>(type, name);
     }
+
+    /**
+     * Returns the canonical named key of the given type and name.
+     * <p/>
+     * Repeated calls with the same type and name return the same key instance, so looking up
+     * values with interned keys usually compares keys by identity only. Looking up an already
+     * interned key does not allocate.
+     *
+     * @throws NullPointerException if the type or name is <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> NamedKey<T> intern(Class<T> type, String name) {
+        Objects.requireNonNull(name, "Name of an interned key can not be null");
+        ConcurrentMap<String, NamedKey<?>> keys = namedKeys.get(type);
+        NamedKey<?> key = keys.get(name);
+        if (key == null) {
+            NamedKey<?> existing = keys.putIfAbsent(name, key = new NamedKey<T>(type, name));
+            if (existing != null) {
+                key = existing;
+            }
+        }
+        return (NamedKey<T>) key;
+    }
+
+    /**
+     * Creates a new key with a dense slot index, that can be looked up in an {@link ArrayRegistry}
+     * without hashing.
+     */
+    public static <T> IndexedKey<T> indexed(Class<T> type) {
+        return new IndexedKey<T>(type);
+    }
+
+    private static <T> TypeKey<T> newTypeKey(Class<T> type) {
+        return new TypeKey<T>(type);
+    }
 }
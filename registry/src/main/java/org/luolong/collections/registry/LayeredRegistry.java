@@ -0,0 +1,357 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of Registry that is layered on top of a chain of parent registries.
+ * <p/>
+ * A child scope ({@link #child()}) only stores its own modifications: values put into the child
+ * override the values of its parents and keys removed from the child are masked, while the
+ * parents are never modified through the child. Everything else is looked up from the parent
+ * chain, so creating a child does not copy anything.
+ * <p/>
+ * Values found in the parent chain are cached in the child, so that repeated lookups do not
+ * walk the whole chain. The cache is discarded whenever any layer that has children is modified,
+ * which is detected by a single version shared by all the layers of a chain. Only the layer that
+ * is used keeps such caches, lookups through a child never write to its parents.
+ * <p/>
+ * The merged views ({@link #entrySet()}, {@link #keySet()}, {@link #values()}) are computed while
+ * iterating and are never materialized.
+ * <p/>
+ * This implementation is not thread-safe. A parent may be shared by children used in different
+ * threads, as long as the parent itself is no longer modified or used directly.
+ *
+ * @author Roland Tepp
+ */
+public class LayeredRegistry extends AbstractRegistry {
+
+    // Stands in for null values in the local storage and the cache
+    private static final Object NULL = new Object();
+    // Marks keys that are removed from this layer or not found in the parent chain
+    private static final Object REMOVED = new Object();
+
+    private final LayeredRegistry parent;
+    // Number of modifications of all the layers of the chain that have children
+    private final AtomicLong parentVersion;
+    // Whether children have been created on top of this layer
+    private boolean shared;
+
+    // Local overrides of this layer
+    private final Map<Key<?>, Object> local = new HashMap<>();
+    // Number of modifications of this layer
+    private long modCount;
+
+    // Values resolved from the parent chain, valid as long as cacheVersion matches the parent version
+    private Map<Key<?>, Object> cache;
+    private long cacheVersion;
+
+    // Merged size, valid as long as sizeModCount and sizeVersion match the modification count and the parent version
+    private int size;
+    private long sizeModCount = -1;
+    private long sizeVersion;
+
+    public LayeredRegistry() {
+        this(null);
+    }
+
+    private LayeredRegistry(LayeredRegistry parent) {
+        this.parent = parent;
+        this.parentVersion = parent == null ? new AtomicLong() : parent.parentVersion;
+    }
+
+    /**
+     * Creates a new empty scope on top of this registry.
+     *
+     * @return a new child registry that falls back to this registry for all the keys it does not override
+     */
+    public LayeredRegistry child() {
+        shared = true;
+        return new LayeredRegistry(this);
+    }
+
+    /**
+     * Returns the parent of this registry or <code>null</code> if this is the root registry.
+     */
+    public LayeredRegistry getParent() {
+        return parent;
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        return key.getType().cast(unmask(resolve(key)));
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        Objects.requireNonNull(key, "Key can not be null");
+        local.put(key, value == null ? NULL : value);
+        modified();
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        Object old = resolve(key);
+        if (old == REMOVED) {
+            // Absent keys are not masked, so that the local storage does not grow with them
+            return null;
+        }
+        if (parent == null || parent.lookup(key) == REMOVED) {
+            local.remove(key);
+        } else {
+            local.put(key, REMOVED);
+        }
+        modified();
+        return key.getType().cast(unmask(old));
+    }
+
+    @Override
+    public int size() {
+        long version = parentVersion.get();
+        if (sizeModCount != modCount || sizeVersion != version) {
+            size = computeSize();
+            sizeModCount = modCount;
+            sizeVersion = version;
+        }
+        return size;
+    }
+
+    private int computeSize() {
+        if (parent == null) {
+            return local.size();
+        }
+        // The size of the parent is computed rather than cached, as the parent may be shared
+        int size = parent.computeSize();
+        for (Map.Entry<Key<?>, Object> entry : local.entrySet()) {
+            boolean inParent = parent.lookup(entry.getKey()) != REMOVED;
+            if (entry.getValue() == REMOVED) {
+                size -= inParent ? 1 : 0;
+            } else {
+                size += inParent ? 0 : 1;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        local.clear();
+        if (parent != null) {
+            // Mask all the entries of the parent chain
+            for (Key<?> key : parent.keySet()) {
+                local.put(key, REMOVED);
+            }
+        }
+        modified();
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return LayeredRegistry.this.size();
+            }
+        };
+    }
+
+    /**
+     * Counts a modification of this layer, and of the parent chain of its children if it has any.
+     * <p/>
+     * The parent version only ever increases, so the caches of the children are discarded whenever
+     * any of their parents is modified, without walking the parent chain on every lookup.
+     */
+    private void modified() {
+        modCount++;
+        if (shared) {
+            parentVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the (masked) value of the key or {@link #REMOVED} if this registry has no mapping for the key.
+     */
+    private Object resolve(Key<?> key) {
+        Object value = local.get(key);
+        if (value != null) {
+            return value;
+        }
+        if (parent == null) {
+            return REMOVED;
+        }
+        long version = parentVersion.get();
+        if (cache == null || cacheVersion != version) {
+            cache = new HashMap<>();
+            cacheVersion = version;
+        } else if ((value = cache.get(key)) != null) {
+            return value;
+        }
+        value = parent.lookup(key);
+        cache.put(key, value);
+        return value;
+    }
+
+    /**
+     * Returns the (masked) value of the key in the local storage of this layer or the nearest of
+     * its parents, or {@link #REMOVED} if none of them has a mapping for the key.
+     * <p/>
+     * Unlike {@link #resolve(Key)}, this does not use or update the caches of the layers.
+     */
+    private Object lookup(Key<?> key) {
+        for (LayeredRegistry layer = this; layer != null; layer = layer.parent) {
+            Object value = layer.local.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return REMOVED;
+    }
+
+    private static Object unmask(Object value) {
+        return value == NULL || value == REMOVED ? null : value;
+    }
+
+    /**
+     * Iterates over the local entries of this layer and then over the entries of the parent,
+     * that are not overridden or removed in this layer.
+     * <p/>
+     * The root layer holds no removed markers, so its entries are not looked ahead and are removed
+     * through the iterator of the local storage.
+     */
+    private class EntryIterator implements Iterator<Entry<?>> {
+        private final Iterator<Map.Entry<Key<?>, Object>> localIterator = local.entrySet().iterator();
+        private Iterator<Entry<?>> parentIterator;
+        private Map.Entry<Key<?>, Object> nextLocal;
+        private Entry<?> nextParent;
+        private Map.Entry<Key<?>, Object> lastLocal;
+        private Entry<?> lastParent;
+
+        @Override
+        public boolean hasNext() {
+            if (nextLocal != null || nextParent != null) {
+                return true;
+            }
+            if (parent == null) {
+                return localIterator.hasNext();
+            }
+            while (localIterator.hasNext()) {
+                Map.Entry<Key<?>, Object> entry = localIterator.next();
+                if (entry.getValue() != REMOVED) {
+                    nextLocal = entry;
+                    return true;
+                }
+            }
+            if (parentIterator == null) {
+                parentIterator = parent.entrySet().iterator();
+            }
+            while (parentIterator.hasNext()) {
+                Entry<?> entry = parentIterator.next();
+                if (!local.containsKey(entry.getKey())) {
+                    nextParent = entry;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Entry<?> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (parent == null) {
+                lastLocal = localIterator.next();
+                return new LocalEntry<Object>(lastLocal);
+            }
+            lastLocal = nextLocal;
+            lastParent = nextParent;
+            nextLocal = null;
+            nextParent = null;
+            return lastLocal != null ? new LocalEntry<Object>(lastLocal) : new ParentEntry<>(lastParent);
+        }
+
+        @Override
+        public void remove() {
+            if (lastLocal != null) {
+                if (parent == null) {
+                    localIterator.remove();
+                } else {
+                    lastLocal.setValue(REMOVED);
+                }
+            } else if (lastParent != null) {
+                local.put(lastParent.getKey(), REMOVED);
+            } else {
+                throw new IllegalStateException();
+            }
+            lastLocal = null;
+            lastParent = null;
+            modified();
+        }
+    }
+
+    private class LocalEntry<T> implements Entry<T> {
+        private final Map.Entry<Key<?>, Object> entry;
+
+        LocalEntry(Map.Entry<Key<?>, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Key<T> getKey() {
+            return (Key<T>) entry.getKey();
+        }
+
+        @Override
+        public T getValue() {
+            return getKey().getType().cast(unmask(entry.getValue()));
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = getValue();
+            entry.setValue(value == null ? NULL : getKey().getType().cast(value));
+            modified();
+            return old;
+        }
+    }
+
+    /**
+     * Entry of a parent layer, writing through to this layer.
+     */
+    private class ParentEntry<T> implements Entry<T> {
+        private final Entry<T> entry;
+
+        ParentEntry(Entry<T> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Key<T> getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public T getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = getValue();
+            put(getKey(), value);
+            return old;
+        }
+    }
+}
@@ -1,40 +1,310 @@
 package org.luolong.collections.registry;
 
-import com.sun.istack.internal.NotNull;
-import com.sun.istack.internal.Nullable;
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
-
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * Basic implementation of Registry using {@code java.util.Map} for
  * internal storage of key-value pairs.
+ * <p/>
+ * Keys are additionally indexed by every supertype of their {@link Key#getType() type},
+ * so the typed views ({@link #entrySet(Class)}, {@link #keySet(Class)}, {@link #values(Class)})
+ * and {@link #removeAll(Class)} only visit the matching entries instead of scanning the whole
+ * registry.
+ * <p/>
+ * A registry created with {@link #withSupertypeResolution()} also resolves type keys by
+ * supertype: looking up <code>Keys.of(Service.class)</code> without a value of its own returns
+ * the value of the single registered type key of a subtype of <code>Service</code>.
  *
  * @author Roland Tepp
  */
-public class MapRegistry implements Registry {
+public class MapRegistry extends AbstractRegistry {
+
+    // Cached resolution of a type without a matching key
+    private static final Object UNRESOLVED = new Object();
+
+    // Orders ambiguous candidates deterministically
+    private static final Comparator<Key<?>> BY_TYPE_NAME = new Comparator<Key<?>>() {
+        @Override
+        public int compare(Key<?> a, Key<?> b) {
+            return a.getType().getName().compareTo(b.getType().getName());
+        }
+    };
 
     // Internal map storage of registry entries
     private final Map<Object, Object> map;
 
+    // Keys of the registry entries, indexed by all the supertypes of the key type
+    private final Map<Class<?>, Set<Key<?>>> index = new HashMap<>();
+
+    // Type keys resolved by the requested type, null if supertypes are not resolved
+    private final Map<Class<?>, Object> resolved;
+    // Number of value writes, validates the values cached with the resolved keys
+    private int modCount;
+
     public MapRegistry() {
         this.map = new HashMap<>();
+        this.resolved = null;
     }
 
-    public MapRegistry(@NotNull Map<Object, Object> impl) {
-        if (Objects.requireNonNull( impl, "Map implementation can not be null").isEmpty() ) {
+    public MapRegistry(Map<Object, Object> impl) {
+        this(impl, false);
+    }
+
+    private MapRegistry(Map<Object, Object> impl, boolean resolveSupertypes) {
+        if (!Objects.requireNonNull( impl, "Map implementation can not be null").isEmpty() ) {
             throw new IllegalArgumentException("Initial map implementation must be empty!");
         }
         this.map = impl;
+        this.resolved = resolveSupertypes ? new HashMap<Class<?>, Object>() : null;
+    }
+
+    /**
+     * Creates a registry that resolves type keys by supertype.
+     * <p/>
+     * Looking up a {@link Keys#of(Class) type key} that has no mapping of its own returns the
+     * value of the single registered type key of a subtype. If there is more than one such key,
+     * the lookup throws {@link AmbiguousKeyException}. Other kinds of keys are only matched
+     * exactly.
+     * <p/>
+     * Resolved keys are cached by the requested type together with their values, so after the
+     * first lookup resolving a key costs one additional hash lookup, and another one after the
+     * registry has been modified. Adding or removing a type key only invalidates the cached
+     * resolutions of its supertypes.
+     */
+    public static MapRegistry withSupertypeResolution() {
+        return new MapRegistry(new HashMap<>(), true);
     }
 
-    public <T> T get(@NotNull Key<T> key) {
+    public <T> T get(Key<T> key) {
         Object value = map.get(key);
+        if (value == null && resolved != null && key instanceof TypeKey) {
+            Resolution resolution = resolution(key);
+            if (resolution != null) {
+                if (resolution.modCount != modCount) {
+                    resolution.value = map.get(resolution.key);
+                    resolution.modCount = modCount;
+                }
+                value = resolution.value;
+            }
+        }
         return key.getType().cast(value);
     }
 
-    public <T> void put(@NotNull Key<T> key, @Nullable T value) {
-        map.put(key, value);
+    /**
+     * Returns the registered type key the given type resolves to, or <code>null</code> if there
+     * is none.
+     * <p/>
+     * The type key of the type itself is returned if it is registered, otherwise the single
+     * registered type key of a subtype.
+     *
+     * @throws AmbiguousKeyException if the type resolves to more than one key
+     * @throws UnsupportedOperationException if the registry does not resolve supertypes
+     * @see #withSupertypeResolution()
+     */
+    public <T> Key<? extends T> resolve(Class<T> type) {
+        if (resolved == null) {
+            throw new UnsupportedOperationException("Registry does not resolve supertypes");
+        }
+        Resolution resolution = resolution(Keys.of(type));
+        @SuppressWarnings("unchecked")
+        Key<? extends T> key = resolution == null ? null : (Key<? extends T>) resolution.key;
+        return key;
+    }
+
+    /**
+     * Returns the cached resolution of the type key, or <code>null</code> if it does not resolve.
+     *
+     * @throws AmbiguousKeyException if the type resolves to more than one key
+     */
+    private Resolution resolution(Key<?> key) {
+        Object resolution = resolved.get(key.getType());
+        if (resolution == null) {
+            resolution = resolve(key);
+            resolved.put(key.getType(), resolution);
+        }
+        if (resolution == UNRESOLVED) {
+            return null;
+        }
+        if (resolution instanceof Candidates) {
+            throw new AmbiguousKeyException(key, ((Candidates) resolution).keys);
+        }
+        return (Resolution) resolution;
+    }
+
+    /**
+     * Returns the {@link Resolution}, the {@link Candidates} or {@link #UNRESOLVED} the type key resolves to.
+     */
+    private Object resolve(Key<?> key) {
+        Set<Key<?>> keys = index.get(key.getType());
+        if (keys == null) {
+            return UNRESOLVED;
+        }
+        if (keys.contains(key)) {
+            return new Resolution(key);
+        }
+        List<Key<?>> candidates = new ArrayList<>();
+        for (Key<?> each : keys) {
+            if (each instanceof TypeKey) {
+                candidates.add(each);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return UNRESOLVED;
+        }
+        if (candidates.size() == 1) {
+            return new Resolution(candidates.get(0));
+        }
+        Collections.sort(candidates, BY_TYPE_NAME);
+        return new Candidates(Collections.unmodifiableList(candidates));
+    }
+
+    /**
+     * Cached resolution of a type, with the value of the resolved key as of the given number of
+     * value writes.
+     */
+    private static final class Resolution {
+        final Key<?> key;
+        Object value;
+        int modCount = -1;
+
+        Resolution(Key<?> key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Cached resolution of an ambiguous type.
+     */
+    private static final class Candidates {
+        final List<Key<?>> keys;
+
+        Candidates(List<Key<?>> keys) {
+            this.keys = keys;
+        }
+    }
+
+    public <T> void put(Key<T> key, T value) {
+        Object old = map.put(Objects.requireNonNull(key, "Key can not be null"), value);
+        modCount++;
+        if (old == null) {
+            // Either a new key or one that was mapped to null, adding to the index is idempotent
+            index(key);
+        }
+    }
+
+    @Override
+    public void getAll(Batch batch) {
+        if (resolved != null) {
+            super.getAll(batch);
+            return;
+        }
+        Map<Object, Object> map = this.map;
+        Key<?>[] keys = batch.keys;
+        Object[] values = batch.values;
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = keys[i].getType().cast(map.get(keys[i]));
+        }
+    }
+
+    /**
+     * Associates every key with the value at the same position.
+     * <p/>
+     * All the values are type checked before any of them is stored, and only the keys that were
+     * not in the registry yet are indexed.
+     */
+    @Override
+    public void putAll(Key<?>[] keys, Object[] values) {
+        Batch.check(keys, values);
+        modCount++;
+        for (int i = 0; i < keys.length; i++) {
+            if (map.put(keys[i], values[i]) == null) {
+                index(keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified registry to this registry.
+     * <p/>
+     * The backing map is resized at most once for the whole batch. Mappings of another
+     * <code>MapRegistry</code> are copied map to map, merging its type index into the
+     * index of this registry.
+     */
+    @Override
+    public <T> void putAll(Registry r) {
+        if (r == this) {
+            return;
+        }
+        modCount++;
+        if (r instanceof MapRegistry) {
+            MapRegistry other = (MapRegistry) r;
+            map.putAll(other.map);
+            if (resolved != null) {
+                resolved.clear();
+            }
+            for (Map.Entry<Class<?>, Set<Key<?>>> entry : other.index.entrySet()) {
+                Set<Key<?>> keys = index.get(entry.getKey());
+                if (keys == null) {
+                    index.put(entry.getKey(), new HashSet<>(entry.getValue()));
+                } else {
+                    keys.addAll(entry.getValue());
+                }
+            }
+        } else {
+            map.putAll(new IndexingMapView(r));
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this registry.
+     * <p/>
+     * All the values are type checked before any of them is stored, and the backing map
+     * is resized at most once for the whole batch.
+     */
+    @Override
+    public void putAll(Map<? extends Key<?>, ?> m) {
+        for (Map.Entry<? extends Key<?>, ?> entry : m.entrySet()) {
+            entry.getKey().getType().cast(entry.getValue());
+        }
+        map.putAll(m);
+        modCount++;
+        for (Key<?> key : m.keySet()) {
+            index(key);
+        }
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        Object old = map.remove(key);
+        if (old != null || isIndexed(key)) {
+            unindex(key, null);
+        }
+        return key.getType().cast(old);
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> removeAll(Class<T> type) {
+        Set<Key<?>> keys = index.remove(type);
+        if (keys == null) {
+            return new HashSet<>();
+        }
+        Set<Entry<? extends T>> removed = new HashSet<>(keys.size() * 4 / 3 + 1);
+        for (Key<?> key : keys) {
+            removed.add(removedEntry(key, type));
+            unindex(key, keys);
+        }
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Entry<? extends T> removedEntry(Key<?> key, Class<T> type) {
+        Key<? extends T> typed = (Key<? extends T>) key;
+        return newSimpleEntry(typed, map.remove(typed));
+    }
+
+    private static <T> Entry<T> newSimpleEntry(Key<T> key, Object value) {
+        return new SimpleEntry<T>(key, key.getType().cast(value));
     }
 
     public boolean isEmpty() {
@@ -45,14 +315,47 @@ public class MapRegistry implements Registry {
         return map.size();
     }
 
+    @Override
+    public void clear() {
+        map.clear();
+        index.clear();
+        if (resolved != null) {
+            resolved.clear();
+        }
+    }
+
+    @Override
+    public void forEach(RegistryVisitor visitor) {
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            visit(visitor, (Key<?>) entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static <T> void visit(RegistryVisitor visitor, Key<T> key, Object value) {
+        visitor.visit(key, key.getType().cast(value));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> void forEachOfType(Class<T> type, BiConsumer<? super Key<? extends T>, ? super T> action) {
+        Set<Key<?>> keys = index.get(type);
+        if (keys != null) {
+            for (Key<?> key : keys) {
+                action.accept((Key<? extends T>) key, type.cast(map.get(key)));
+            }
+        }
+    }
+
     @Override
     public Set<Key<?>> keySet() {
         final Set<Object> keys = map.keySet();
         return new AbstractSet<Key<?>>() {
             @Override
             public Iterator<Key<?>> iterator() {
-                final Iterator<Key<?>> iterator = iterator();
+                final Iterator<Object> iterator = keys.iterator();
                 return new Iterator<Key<?>>() {
+                    private Key<?> last;
+
                     @Override
                     public boolean hasNext() {
                         return iterator.hasNext();
@@ -60,26 +363,32 @@ public class MapRegistry implements Registry {
 
                     @Override
                     public Key<?> next() {
-                        return iterator.next();
+                        return last = (Key<?>) iterator.next();
                     }
 
                     @Override
                     public void remove() {
                         iterator.remove();
+                        unindex(last, null);
                     }
                 };
             }
 
+            @Override
+            public boolean contains(Object o) {
+                return keys.contains(o);
+            }
+
             @Override
             public int size() {
                 return keys.size();
             }
-        };  //To change body of implemented methods use File | Settings | File Templates.
-    }
 
-    @Override
-    public Collection<?> values() {
-        return map.values();
+            @Override
+            public void clear() {
+                MapRegistry.this.clear();
+            }
+        };
     }
 
     @Override
@@ -90,6 +399,8 @@ public class MapRegistry implements Registry {
             public Iterator<Entry<?>> iterator() {
                 final Iterator<Map.Entry<Object, Object>> iterator = entries.iterator();
                 return new Iterator<Entry<?>>() {
+                    private Key<?> last;
+
                     @Override
                     public boolean hasNext() {
                         return iterator.hasNext();
@@ -97,28 +408,15 @@ public class MapRegistry implements Registry {
 
                     @Override
                     public Entry<?> next() {
-                        final Map.Entry<Object, Object> entry = iterator.next();
-                        return new Entry<Object>() {
-                            @Override
-                            public Key<Object> getKey() {
-                                return (Key<Object>) entry.getKey();
-                            }
-
-                            @Override
-                            public Object getValue() {
-                                return entry.getValue();
-                            }
-
-                            @Override
-                            public Object setValue(Object value) {
-                                return entry.setValue(value);
-                            }
-                        };
+                        Map.Entry<Object, Object> entry = iterator.next();
+                        last = (Key<?>) entry.getKey();
+                        return new MapEntry<>(entry);
                     }
 
                     @Override
                     public void remove() {
                         iterator.remove();
+                        unindex(last, null);
                     }
                 };
             }
@@ -127,7 +425,267 @@ public class MapRegistry implements Registry {
             public int size() {
                 return entries.size();
             }
+
+            @Override
+            public void clear() {
+                MapRegistry.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> entrySet(final Class<T> type) {
+        return new TypedView<T, Entry<? extends T>>(type) {
+            @Override
+            Entry<? extends T> element(Key<? extends T> key) {
+                return new KeyEntry<>(key);
+            }
+        };
+    }
+
+    @Override
+    public <T> Set<Key<? extends T>> keySet(final Class<T> type) {
+        return new TypedView<T, Key<? extends T>>(type) {
+            @Override
+            Key<? extends T> element(Key<? extends T> key) {
+                return key;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                Set<Key<?>> keys = index.get(type);
+                return keys != null && keys.contains(o);
+            }
         };
+    }
+
+    @Override
+    public <T> Collection<? extends T> values(final Class<T> type) {
+        return new TypedView<T, T>(type) {
+            @Override
+            T element(Key<? extends T> key) {
+                return get(key);
+            }
+        };
+    }
+
+    private void index(Key<?> key) {
+        invalidate(key);
+        for (Class<?> type : Types.supertypes(key.getType())) {
+            Set<Key<?>> keys = index.get(type);
+            if (keys == null) {
+                index.put(type, keys = new HashSet<>());
+            }
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Removes the key from all the index entries except the one being iterated over.
+     */
+    private void unindex(Key<?> key, Set<Key<?>> skip) {
+        invalidate(key);
+        for (Class<?> type : Types.supertypes(key.getType())) {
+            Set<Key<?>> keys = index.get(type);
+            if (keys != null && keys != skip && keys.remove(key) && keys.isEmpty()) {
+                index.remove(type);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached resolutions the type key may take part in.
+     */
+    private void invalidate(Key<?> key) {
+        if (resolved != null && key instanceof TypeKey && !resolved.isEmpty()) {
+            for (Class<?> type : Types.supertypes(key.getType())) {
+                resolved.remove(type);
+            }
+        }
+    }
+
+    private boolean isIndexed(Key<?> key) {
+        Set<Key<?>> keys = index.get(key.getType());
+        return keys != null && keys.contains(key);
+    }
+
+    /**
+     * Live view of the index entry of the given type.
+     */
+    private abstract class TypedView<T, E> extends AbstractSet<E> {
+        final Class<T> type;
+
+        TypedView(Class<T> type) {
+            this.type = type;
+        }
+
+        abstract E element(Key<? extends T> key);
 
+        @Override
+        public Iterator<E> iterator() {
+            final Set<Key<?>> keys = index.get(type);
+            if (keys == null) {
+                return Collections.emptyIterator();
+            }
+            final Iterator<Key<?>> iterator = keys.iterator();
+            return new Iterator<E>() {
+                private Key<? extends T> last;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public E next() {
+                    last = (Key<? extends T>) iterator.next();
+                    return element(last);
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    map.remove(last);
+                    unindex(last, keys);
+                    if (keys.isEmpty() && index.get(type) == keys) {
+                        index.remove(type);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            Set<Key<?>> keys = index.get(type);
+            return keys == null ? 0 : keys.size();
+        }
+    }
+
+    /**
+     * Map view of a registry for bulk copying its mappings with {@code Map.putAll}.
+     * <p/>
+     * The view reuses a single map entry for all the elements and indexes every key of the
+     * registry as it is iterated over, so that the copy takes a single pass over the registry.
+     */
+    private class IndexingMapView extends AbstractMap<Object, Object> {
+        private final Registry registry;
+
+        IndexingMapView(Registry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public int size() {
+            return registry.size();
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<Object, Object>>() {
+                @Override
+                public Iterator<Map.Entry<Object, Object>> iterator() {
+                    final Iterator<Registry.Entry<?>> iterator = registry.entrySet().iterator();
+                    final SimpleMapEntry entry = new SimpleMapEntry();
+                    return new Iterator<Map.Entry<Object, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<Object, Object> next() {
+                            Registry.Entry<?> next = iterator.next();
+                            index(next.getKey());
+                            entry.key = next.getKey();
+                            entry.value = next.getValue();
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return registry.size();
+                }
+            };
+        }
+    }
+
+    private static class SimpleMapEntry implements Map.Entry<Object, Object> {
+        Object key;
+        Object value;
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Entry of the entry set, reading and writing through to the backing map.
+     */
+    private class MapEntry<T> implements Entry<T> {
+        private final Map.Entry<Object, Object> entry;
+
+        MapEntry(Map.Entry<Object, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Key<T> getKey() {
+            return (Key<T>) entry.getKey();
+        }
+
+        @Override
+        public T getValue() {
+            return getKey().getType().cast(entry.getValue());
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = getKey().getType().cast(entry.setValue(getKey().getType().cast(value)));
+            modCount++;
+            return old;
+        }
+    }
+
+    /**
+     * Entry of a typed view, reading and writing through to the backing map.
+     */
+    private class KeyEntry<T> implements Entry<T> {
+        private final Key<T> key;
+
+        KeyEntry(Key<T> key) {
+            this.key = key;
+        }
+
+        @Override
+        public Key<T> getKey() {
+            return key;
+        }
+
+        @Override
+        public T getValue() {
+            return get(key);
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = key.getType().cast(map.put(key, key.getType().cast(value)));
+            modCount++;
+            return old;
+        }
     }
 }
@@ -0,0 +1,489 @@
+package org.luolong.collections.registry;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only implementation of Registry backed by a memory mapped snapshot file.
+ * <p/>
+ * A snapshot of a registry is written with {@link #write(Registry, Path, ValueCodecs)} and
+ * reopened with {@link #open(Path, ValueCodecs)}. Opening a snapshot only maps the file into
+ * memory: keys are looked up in a hash table stored in the file and values are decoded on first
+ * access (and then cached), so the cost of restoring a snapshot is proportional to the number of
+ * entries actually used.
+ * <p/>
+ * Only entries of {@link Keys#of(Class) type keys} and {@link NamedKey named keys} can be written
+ * to a snapshot. Values are encoded with the {@link ValueCodec codec} registered for the type of
+ * their key. Snapshots are limited to 2GB in size.
+ * <p/>
+ * All the mutating operations throw <code>UnsupportedOperationException</code>.
+ *
+ * @author Roland Tepp
+ */
+public final class MappedRegistry extends AbstractRegistry {
+
+    /*
+     * Snapshot file layout (big endian):
+     *
+     *   header:     int magic, int entry count, int hash table capacity, int type table offset,
+     *               int hash table offset
+     *   records:    int hash, byte key kind, int type index, [named keys: boolean has name, UTF name],
+     *               int value length (-1 for null values), value bytes
+     *   type table: int count, UTF class name of every key type
+     *   hash table: int record offset (0 for empty slots) for every slot, linear probing
+     */
+    private static final int MAGIC = 0x52454731; // "REG1"
+    private static final int HEADER_SIZE = 20;
+    private static final byte TYPE_KEY = 0;
+    private static final byte NAMED_KEY = 1;
+
+    // Stands in for null values in the decoded value cache
+    private static final Object NULL = new Object();
+
+    private final ByteBuffer buffer;
+    private final ValueCodecs codecs;
+    private final ClassLoader classLoader;
+    private final int size;
+    private final int mask;
+    private final int recordsEnd;
+    private final int tableOffset;
+    private final String[] typeNames;
+    // Key types resolved while iterating, by type index
+    private final Class<?>[] types;
+
+    // Decoded values of the entries accessed so far
+    private final ConcurrentHashMap<Key<?>, Object> values = new ConcurrentHashMap<>();
+
+    private MappedRegistry(ByteBuffer buffer, ValueCodecs codecs, ClassLoader classLoader) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a registry snapshot");
+        }
+        this.buffer = buffer;
+        this.codecs = codecs;
+        this.classLoader = classLoader;
+        this.size = buffer.getInt(4);
+        this.mask = buffer.getInt(8) - 1;
+        this.recordsEnd = buffer.getInt(12);
+        this.tableOffset = buffer.getInt(16);
+
+        DataInputStream in = input(recordsEnd, tableOffset - recordsEnd);
+        this.typeNames = new String[in.readInt()];
+        for (int i = 0; i < typeNames.length; i++) {
+            typeNames[i] = in.readUTF();
+        }
+        this.types = new Class<?>[typeNames.length];
+    }
+
+    /**
+     * Opens the registry snapshot file, resolving key types with the context class loader of the current thread.
+     *
+     * @param file   snapshot file written by {@link #write(Registry, Path, ValueCodecs)}
+     * @param codecs codecs of the values stored in the snapshot
+     * @return registry backed by the snapshot file
+     * @throws IOException if the file can not be mapped or is not a registry snapshot
+     */
+    public static MappedRegistry open(Path file, ValueCodecs codecs) throws IOException {
+        return open(file, codecs, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Opens the registry snapshot file.
+     *
+     * @param file        snapshot file written by {@link #write(Registry, Path, ValueCodecs)}
+     * @param codecs      codecs of the values stored in the snapshot
+     * @param classLoader class loader used to resolve the key types when iterating over the registry
+     * @return registry backed by the snapshot file
+     * @throws IOException if the file can not be mapped or is not a registry snapshot
+     */
+    public static MappedRegistry open(Path file, ValueCodecs codecs, ClassLoader classLoader) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Registry snapshot is too large: " + file);
+            }
+            return new MappedRegistry(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), codecs, classLoader);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the registry to the file, replacing the file if it already exists.
+     *
+     * @param registry registry to write
+     * @param file     snapshot file to write
+     * @param codecs   codecs of the values stored in the registry
+     * @throws IOException              if writing to the file fails
+     * @throws IllegalArgumentException if the registry contains keys other than type or named keys,
+     *                                  or values without a registered codec
+     */
+    public static void write(Registry registry, Path file, ValueCodecs codecs) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            RecordWriter records = new RecordWriter(codecs, Math.max(registry.size(), 16));
+            for (Entry<?> entry : registry.entrySet()) {
+                records.write(entry, out);
+            }
+
+            int typesOffset = offset(out);
+            out.writeInt(records.types.size());
+            for (String typeName : records.types.keySet()) {
+                out.writeUTF(typeName);
+            }
+
+            int capacity = Integer.highestOneBit(Math.max(records.count, 2) - 1) << 2;
+            int[] table = new int[capacity];
+            for (int i = 0; i < records.count; i++) {
+                int slot = records.hashes[i] & (capacity - 1);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                table[slot] = records.offsets[i];
+            }
+            int tableOffset = offset(out);
+            for (int offset : table) {
+                out.writeInt(offset);
+            }
+            offset(out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(records.count).putInt(capacity).putInt(typesOffset).putInt(tableOffset);
+            header.flip();
+            channel.write(header, 0);
+        }
+    }
+
+    private static int offset(DataOutputStream out) throws IOException {
+        long offset = (long) HEADER_SIZE + out.size();
+        if (out.size() == Integer.MAX_VALUE || offset > Integer.MAX_VALUE) {
+            throw new IOException("Registry snapshot is too large");
+        }
+        return (int) offset;
+    }
+
+    private static int hash(byte kind, String typeName, String name) {
+        int h = 31 * (31 * typeName.hashCode() + (name == null ? 0 : name.hashCode())) + kind;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        Object value = values.get(key);
+        if (value == null) {
+            int offset = find(key);
+            if (offset == 0) {
+                return null;
+            }
+            value = decode(key, offset);
+        }
+        return key.getType().cast(value == NULL ? null : value);
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        throw new UnsupportedOperationException("Registry is read-only");
+    }
+
+    @Override
+    public <T> void putAll(Registry r) {
+        throw new UnsupportedOperationException("Registry is read-only");
+    }
+
+    @Override
+    public void putAll(Map<? extends Key<?>, ?> m) {
+        throw new UnsupportedOperationException("Registry is read-only");
+    }
+
+    @Override
+    public void putAll(Key<?>[] keys, Object[] values) {
+        throw new UnsupportedOperationException("Registry is read-only");
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        throw new UnsupportedOperationException("Registry is read-only");
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> removeAll(Class<T> type) {
+        throw new UnsupportedOperationException("Registry is read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Registry is read-only");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the offset of the record of the key or 0 if the snapshot does not contain the key.
+     */
+    private int find(Key<?> key) {
+        byte kind;
+        String name = null;
+        if (key instanceof TypeKey) {
+            kind = TYPE_KEY;
+        } else if (key instanceof NamedKey) {
+            kind = NAMED_KEY;
+            name = ((NamedKey<?>) key).getName();
+        } else {
+            return 0;
+        }
+        String typeName = key.getType().getName();
+        int hash = hash(kind, typeName, name);
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int offset = buffer.getInt(tableOffset + (slot << 2));
+            if (offset == 0) {
+                return 0;
+            }
+            if (buffer.getInt(offset) == hash && buffer.get(offset + 4) == kind
+                    && typeNames[buffer.getInt(offset + 5)].equals(typeName)
+                    && (kind == TYPE_KEY || equal(name, readName(offset)))) {
+                return offset;
+            }
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private String readName(int offset) {
+        if (buffer.get(offset + 9) == 0) {
+            return null;
+        }
+        try {
+            return input(offset + 10, (buffer.getShort(offset + 10) & 0xFFFF) + 2).readUTF();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int valueOffset(int offset) {
+        if (buffer.get(offset + 4) == TYPE_KEY) {
+            return offset + 9;
+        }
+        if (buffer.get(offset + 9) == 0) {
+            return offset + 10;
+        }
+        return offset + 12 + (buffer.getShort(offset + 10) & 0xFFFF);
+    }
+
+    /**
+     * Decodes the value of the record and caches it.
+     */
+    private Object decode(Key<?> key, int offset) {
+        Object value = NULL;
+        int valueOffset = valueOffset(offset);
+        int length = buffer.getInt(valueOffset);
+        if (length >= 0) {
+            try {
+                value = codecs.forType(key.getType()).read(input(valueOffset + 4, length));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to decode value of " + key, e);
+            }
+        }
+        Object existing = values.putIfAbsent(key, value);
+        return existing != null ? existing : value;
+    }
+
+    private DataInputStream input(int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        slice.limit(offset + length);
+        return new DataInputStream(new ByteBufferInputStream(slice));
+    }
+
+    private Class<?> type(int index) {
+        Class<?> type = types[index];
+        if (type == null) {
+            type = Types.forName(typeNames[index], classLoader);
+            if (type == null) {
+                throw new IllegalStateException("Key type of a registry snapshot entry not found: " + typeNames[index]);
+            }
+            types[index] = type;
+        }
+        return type;
+    }
+
+    /**
+     * Iterates over the records of the snapshot in the order they were written.
+     */
+    private class EntryIterator implements Iterator<Entry<?>> {
+        private int offset = HEADER_SIZE;
+
+        @Override
+        public boolean hasNext() {
+            return offset < recordsEnd;
+        }
+
+        @Override
+        public Entry<?> next() {
+            if (offset >= recordsEnd) {
+                throw new NoSuchElementException();
+            }
+            int record = offset;
+            int valueOffset = valueOffset(record);
+            int length = buffer.getInt(valueOffset);
+            offset = valueOffset + 4 + Math.max(length, 0);
+
+            Class<?> type = type(buffer.getInt(record + 5));
+            Key<?> key = buffer.get(record + 4) == TYPE_KEY ? Keys.of(type) : Keys.of(type, readName(record));
+            return newEntry(key, record);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Registry is read-only");
+        }
+    }
+
+    private <T> Entry<T> newEntry(final Key<T> key, final int record) {
+        return new Entry<T>() {
+            @Override
+            public Key<T> getKey() {
+                return key;
+            }
+
+            @Override
+            public T getValue() {
+                Object value = values.get(key);
+                if (value == null) {
+                    value = decode(key, record);
+                }
+                return key.getType().cast(value == NULL ? null : value);
+            }
+
+            @Override
+            public T setValue(T value) {
+                throw new UnsupportedOperationException("Registry is read-only");
+            }
+        };
+    }
+
+    /**
+     * Writes the records of the snapshot, collecting the record offsets and hashes for the hash table.
+     */
+    private static class RecordWriter {
+        final ValueCodecs codecs;
+        final Map<String, Integer> types = new LinkedHashMap<>();
+        final ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
+        final DataOutputStream valueOut = new DataOutputStream(valueBytes);
+        int[] hashes;
+        int[] offsets;
+        int count;
+
+        RecordWriter(ValueCodecs codecs, int capacity) {
+            this.codecs = codecs;
+            this.hashes = new int[capacity];
+            this.offsets = new int[capacity];
+        }
+
+        <T> void write(Entry<T> entry, DataOutputStream out) throws IOException {
+            Key<T> key = entry.getKey();
+            byte kind;
+            String name = null;
+            if (key instanceof TypeKey) {
+                kind = TYPE_KEY;
+            } else if (key instanceof NamedKey) {
+                kind = NAMED_KEY;
+                name = ((NamedKey<T>) key).getName();
+            } else {
+                throw new IllegalArgumentException("Only type and named keys can be written to a snapshot: " + key);
+            }
+            String typeName = key.getType().getName();
+            Integer typeIndex = types.get(typeName);
+            if (typeIndex == null) {
+                types.put(typeName, typeIndex = types.size());
+            }
+
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            int hash = hash(kind, typeName, name);
+            hashes[count] = hash;
+            offsets[count] = offset(out);
+            count++;
+
+            out.writeInt(hash);
+            out.writeByte(kind);
+            out.writeInt(typeIndex);
+            if (kind == NAMED_KEY) {
+                out.writeBoolean(name != null);
+                if (name != null) {
+                    out.writeUTF(name);
+                }
+            }
+            T value = entry.getValue();
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                valueBytes.reset();
+                codecs.forType(key.getType()).write(value, valueOut);
+                out.writeInt(valueBytes.size());
+                valueBytes.writeTo(out);
+            }
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, len);
+            return len;
+        }
+    }
+}
@@ -6,6 +6,10 @@ import java.util.Objects;
 
 /**
  * Basic implementation of a typed registry key with a name.
+ * <p/>
+ * The hash code of the key is computed once at construction. Keys obtained from
+ * {@link Keys#intern(Class, String)} are canonical instances, so comparing them for
+ * equality usually short-circuits on identity.
  *
  * @author Roland Tepp
  */
@@ -13,10 +17,12 @@ public class NamedKey<T> implements Key<T> {
 
     private final Class<T> type;
     private final String name;
+    private final int hash;
 
     public NamedKey(Class<T> type, String name) {
         this.type = type;
         this.name = name;
+        this.hash = 31 * type.hashCode() + (name == null ? 0 : name.hashCode());
     }
 
     @Override
@@ -30,14 +36,17 @@ public class NamedKey<T> implements Key<T> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, name);
+        return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj instanceof NamedKey) {
             NamedKey other = (NamedKey) obj;
-            if (Objects.equals(type, other.type)) {
+            if (hash == other.hash && type == other.type) {
                 return Objects.equals(name, other.name);
             }
         }
@@ -0,0 +1,570 @@
+package org.luolong.collections.registry;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implementation of Registry that stores <code>Long</code>, <code>Integer</code>, <code>Double</code>
+ * and <code>byte[]</code> values unboxed.
+ * <p/>
+ * Entries are kept in an open-addressed (linear probing) hash table of flat parallel arrays: the
+ * keys, a <code>long</code> for the bits of the value and a tag of the value type, which is derived
+ * from the {@link Key#getType() type} of the key. Values of the numeric key types are stored in the
+ * <code>long</code> bits, so they cost no heap objects at all. Byte arrays are copied into an
+ * off-heap arena allocated with {@link ByteBuffer#allocateDirect(int)}, which is compacted once
+ * more than half of it is taken by removed values. Values of any other type are stored as objects.
+ * <p/>
+ * The primitive accessors ({@link #getLong(Key)}, {@link #putLong(Key, long)}, ...) read and write
+ * the unboxed values directly. The generic {@link #get(Key)} still works for all the keys, boxing
+ * the value (or copying the byte array) on demand. Consequently byte arrays are stored by value:
+ * modifying an array after it was put, or an array returned by the registry, does not modify the
+ * value in the registry.
+ * <p/>
+ * This implementation is not thread-safe.
+ *
+ * @author Roland Tepp
+ */
+public class PrimitiveRegistry extends AbstractRegistry {
+
+    // Value type tags
+    private static final byte OBJECT = 0;
+    private static final byte NULL = 1;
+    private static final byte LONG = 2;
+    private static final byte INT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BYTES = 5;
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int MINIMUM_ARENA_CAPACITY = 4096;
+
+    // Keys, value bits and value tags of the registry entries, indexed by the position of the key in the hash table
+    private Key<?>[] keys;
+    private long[] bits;
+    private byte[] tags;
+    // Values of the OBJECT entries, allocated on first use
+    private Object[] objects;
+    private int size;
+    private int threshold;
+
+    // Byte array values, each prefixed with its length, addressed by the offset stored in the value bits
+    private ByteBuffer arena;
+    // Bytes of the arena taken by removed values
+    private int garbage;
+
+    public PrimitiveRegistry() {
+        this(16);
+    }
+
+    /**
+     * Creates a new registry.
+     *
+     * @param expectedSize number of entries the registry should hold without resizing
+     */
+    public PrimitiveRegistry(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size can not be negative: " + expectedSize);
+        }
+        // Keep the load factor at or below 3/4
+        long minimum = Math.max(expectedSize, 2) * 4L / 3 + 1;
+        allocate((int) Math.min(MAXIMUM_CAPACITY, Long.highestOneBit(minimum - 1) << 1));
+    }
+
+    private void allocate(int capacity) {
+        keys = new Key<?>[capacity];
+        bits = new long[capacity];
+        tags = new byte[capacity];
+        objects = null;
+        threshold = capacity / 4 * 3;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, without boxing it.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped
+     * @throws NullPointerException if the key is <code>null</code>, or not mapped to a non-null value
+     */
+    public long getLong(Key<Long> key) {
+        int i = require(key);
+        return tags[i] == LONG ? bits[i] : (Long) value(i);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the given default value if the
+     * key is not mapped to a non-null value.
+     */
+    public long getLong(Key<Long> key, long defaultValue) {
+        int i = indexOf(key);
+        return i < 0 || tags[i] == NULL ? defaultValue : getLong(key);
+    }
+
+    /**
+     * Associates the specified value with the specified key, without boxing it.
+     */
+    public void putLong(Key<Long> key, long value) {
+        store(key, LONG, value);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, without boxing it.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped
+     * @throws NullPointerException if the key is <code>null</code>, or not mapped to a non-null value
+     */
+    public int getInt(Key<Integer> key) {
+        int i = require(key);
+        return tags[i] == INT ? (int) bits[i] : (Integer) value(i);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the given default value if the
+     * key is not mapped to a non-null value.
+     */
+    public int getInt(Key<Integer> key, int defaultValue) {
+        int i = indexOf(key);
+        return i < 0 || tags[i] == NULL ? defaultValue : getInt(key);
+    }
+
+    /**
+     * Associates the specified value with the specified key, without boxing it.
+     */
+    public void putInt(Key<Integer> key, int value) {
+        store(key, INT, value);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, without boxing it.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped
+     * @throws NullPointerException if the key is <code>null</code>, or not mapped to a non-null value
+     */
+    public double getDouble(Key<Double> key) {
+        int i = require(key);
+        return tags[i] == DOUBLE ? Double.longBitsToDouble(bits[i]) : (Double) value(i);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the given default value if the
+     * key is not mapped to a non-null value.
+     */
+    public double getDouble(Key<Double> key, double defaultValue) {
+        int i = indexOf(key);
+        return i < 0 || tags[i] == NULL ? defaultValue : getDouble(key);
+    }
+
+    /**
+     * Associates the specified value with the specified key, without boxing it.
+     */
+    public void putDouble(Key<Double> key, double value) {
+        store(key, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Returns the length of the byte array to which the specified key is mapped, without copying it,
+     * or <code>-1</code> if the key is not mapped to a non-null value.
+     */
+    public int getBytesLength(Key<byte[]> key) {
+        int i = indexOf(key);
+        if (i < 0 || tags[i] == NULL) {
+            return -1;
+        }
+        return tags[i] == BYTES ? arena.getInt((int) bits[i]) : ((byte[]) objects[i]).length;
+    }
+
+    /**
+     * Copies the byte array to which the specified key is mapped into the given buffer.
+     *
+     * @param key    the key whose associated value is to be copied
+     * @param target buffer to copy the value into, starting at its current position
+     * @return the number of bytes copied, or <code>-1</code> if the key is not mapped to a non-null value
+     * @throws java.nio.BufferOverflowException if there is not enough room in the buffer
+     */
+    public int getBytes(Key<byte[]> key, ByteBuffer target) {
+        int i = indexOf(key);
+        if (i < 0 || tags[i] == NULL) {
+            return -1;
+        }
+        if (tags[i] != BYTES) {
+            byte[] value = (byte[]) objects[i];
+            target.put(value);
+            return value.length;
+        }
+        ByteBuffer source = arena.duplicate();
+        int offset = (int) bits[i];
+        int length = source.getInt(offset);
+        source.limit(offset + 4 + length).position(offset + 4);
+        target.put(source);
+        return length;
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        int i = indexOf(key);
+        return i < 0 ? null : key.getType().cast(value(i));
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        Class<T> type = key.getType();
+        if (value == null) {
+            store(key, NULL, 0);
+        } else if (type == Long.class) {
+            store(key, LONG, (Long) value);
+        } else if (type == Integer.class) {
+            store(key, INT, (Integer) value);
+        } else if (type == Double.class) {
+            store(key, DOUBLE, Double.doubleToRawLongBits((Double) value));
+        } else if (type == byte[].class) {
+            byte[] bytes = (byte[]) value;
+            int offset = allocateBytes(bytes.length);
+            ByteBuffer target = arena.duplicate();
+            target.position(offset + 4);
+            target.put(bytes);
+            store(key, BYTES, offset);
+        } else {
+            int i = store(key, OBJECT, 0);
+            if (objects == null) {
+                objects = new Object[keys.length];
+            }
+            objects[i] = type.cast(value);
+        }
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        T old = key.getType().cast(value(i));
+        delete(i);
+        return old;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(tags, OBJECT);
+        objects = null;
+        size = 0;
+        arena = null;
+        garbage = 0;
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                PrimitiveRegistry.this.clear();
+            }
+        };
+    }
+
+    private static int indexFor(Object key, int mask) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int indexOf(Key<?> key) {
+        Key<?>[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = indexFor(Objects.requireNonNull(key, "Key can not be null"), mask); ; i = (i + 1) & mask) {
+            Key<?> k = keys[i];
+            if (k == null) {
+                return -1;
+            }
+            if (k == key || k.equals(key)) {
+                return i;
+            }
+        }
+    }
+
+    private int require(Key<?> key) {
+        int i = indexOf(key);
+        if (i < 0 || tags[i] == NULL) {
+            throw new NullPointerException("No value for " + key);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the boxed value at the given position.
+     */
+    private Object value(int i) {
+        switch (tags[i]) {
+            case NULL:
+                return null;
+            case LONG:
+                return bits[i];
+            case INT:
+                return (int) bits[i];
+            case DOUBLE:
+                return Double.longBitsToDouble(bits[i]);
+            case BYTES:
+                int offset = (int) bits[i];
+                byte[] bytes = new byte[arena.getInt(offset)];
+                ByteBuffer source = arena.duplicate();
+                source.position(offset + 4);
+                source.get(bytes);
+                return bytes;
+            default:
+                return objects[i];
+        }
+    }
+
+    /**
+     * Stores the value bits with the given tag, releasing the previous value of the key.
+     *
+     * @return the position of the key in the hash table
+     */
+    private int store(Key<?> key, byte tag, long value) {
+        int mask = keys.length - 1;
+        int i = indexFor(Objects.requireNonNull(key, "Key can not be null"), mask);
+        for (Key<?> k; (k = keys[i]) != null; i = (i + 1) & mask) {
+            if (k == key || k.equals(key)) {
+                release(i);
+                tags[i] = tag;
+                bits[i] = value;
+                return i;
+            }
+        }
+        keys[i] = key;
+        tags[i] = tag;
+        bits[i] = value;
+        if (++size > threshold) {
+            resize();
+            return indexOf(key);
+        }
+        return i;
+    }
+
+    /**
+     * Releases the storage of the value at the given position.
+     */
+    private void release(int i) {
+        if (tags[i] == BYTES) {
+            garbage += 4 + arena.getInt((int) bits[i]);
+        } else if (tags[i] == OBJECT && objects != null) {
+            objects[i] = null;
+        }
+    }
+
+    /**
+     * Removes the entry at the given position, shifting back the entries of the probe sequence that follow it.
+     */
+    private void delete(int i) {
+        release(i);
+        int mask = keys.length - 1;
+        int hole = i;
+        for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+            int home = indexFor(keys[j], mask);
+            // Move the entry into the hole, unless its home lies cyclically within (hole, j]
+            if (hole <= j ? hole >= home || home > j : hole >= home && home > j) {
+                keys[hole] = keys[j];
+                bits[hole] = bits[j];
+                tags[hole] = tags[j];
+                if (objects != null) {
+                    objects[hole] = objects[j];
+                }
+                hole = j;
+            }
+        }
+        keys[hole] = null;
+        tags[hole] = OBJECT;
+        if (objects != null) {
+            objects[hole] = null;
+        }
+        size--;
+    }
+
+    private void resize() {
+        if (keys.length == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Registry is full");
+        }
+        Key<?>[] oldKeys = keys;
+        long[] oldBits = bits;
+        byte[] oldTags = tags;
+        Object[] oldObjects = objects;
+        allocate(oldKeys.length * 2);
+        if (oldObjects != null) {
+            objects = new Object[keys.length];
+        }
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = indexFor(oldKeys[j], mask);
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                bits[i] = oldBits[j];
+                tags[i] = oldTags[j];
+                if (oldObjects != null) {
+                    objects[i] = oldObjects[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Allocates room for a byte array of the given length in the arena.
+     *
+     * @return the offset of the length prefix of the allocated room
+     */
+    private int allocateBytes(int length) {
+        int required = 4 + length;
+        if (arena == null) {
+            arena = ByteBuffer.allocateDirect(Math.max(MINIMUM_ARENA_CAPACITY, required));
+        } else if (arena.remaining() < required) {
+            int live = arena.position() - garbage;
+            if (garbage > live) {
+                compact(live + required);
+            }
+            if (arena.remaining() < required) {
+                grow(arena.position() + required);
+            }
+        }
+        int offset = arena.position();
+        arena.putInt(length);
+        arena.position(offset + required);
+        return offset;
+    }
+
+    private void grow(long minimum) {
+        long capacity = Math.max(minimum, (long) arena.capacity() * 2);
+        if (minimum > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Byte array storage is full");
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(capacity, Integer.MAX_VALUE));
+        arena.flip();
+        grown.put(arena);
+        arena = grown;
+    }
+
+    /**
+     * Copies the live byte arrays into a new arena, dropping the removed ones.
+     */
+    private void compact(int minimum) {
+        ByteBuffer compacted = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE,
+                Math.max(MINIMUM_ARENA_CAPACITY, minimum * 2L)));
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && tags[i] == BYTES) {
+                int offset = (int) bits[i];
+                ByteBuffer source = arena.duplicate();
+                source.limit(offset + 4 + arena.getInt(offset)).position(offset);
+                bits[i] = compacted.position();
+                compacted.put(source);
+            }
+        }
+        arena = compacted;
+        garbage = 0;
+    }
+
+    /**
+     * Iterates over the hash table starting after an empty position, so that removing entries
+     * (which only shifts entries back within their probe sequence) never moves an entry that has
+     * not been visited yet to a position that has been.
+     */
+    private class EntryIterator implements Iterator<Entry<?>> {
+        private final int start = emptyPosition();
+        // Number of positions visited, the position being visited is start + visited
+        private int visited;
+        private int last = -1;
+
+        private int emptyPosition() {
+            int i = 0;
+            while (keys[i] != null) {
+                i++;
+            }
+            return i;
+        }
+
+        private int position(int n) {
+            return (start + n) & (keys.length - 1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (visited < keys.length && keys[position(visited)] == null) {
+                visited++;
+            }
+            return visited < keys.length;
+        }
+
+        @Override
+        public Entry<?> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = position(visited++);
+            return new SlotEntry<>(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            delete(last);
+            if (keys[last] != null) {
+                // An entry that has not been visited yet was shifted into the removed position
+                visited--;
+            }
+            last = -1;
+        }
+    }
+
+    private class SlotEntry<T> implements Entry<T> {
+        private final int slot;
+
+        SlotEntry(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Key<T> getKey() {
+            return (Key<T>) keys[slot];
+        }
+
+        @Override
+        public T getValue() {
+            return getKey().getType().cast(value(slot));
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = getValue();
+            put(getKey(), value);
+            return old;
+        }
+    }
+}
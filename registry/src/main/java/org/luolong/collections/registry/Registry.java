@@ -2,7 +2,9 @@ package org.luolong.collections.registry;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * Typed registry of key-value pairs.
@@ -130,6 +132,61 @@ public interface Registry {
      */
     <T> void put(Key<T> key, T value);
 
+    /**
+     * Returns the values of the given keys, as a batch that can be reused for further lookups
+     * of the same keys with {@link #getAll(Batch)}.
+     * <p/>
+     * The effect of this call is equivalent to that of calling {@link #get(Key) get(k)} once for
+     * each of the keys, but implementations may look up the whole batch at once, e.g. holding a
+     * lock only once for the batch.
+     *
+     * @param keys keys whose values are to be returned
+     * @return batch of the keys and their values
+     * @throws NullPointerException if any of the keys is <code>null</code>
+     */
+    default Batch getAll(Key<?>... keys) {
+        Batch batch = new Batch(keys);
+        getAll(batch);
+        return batch;
+    }
+
+    /**
+     * Looks up the values of the keys of the batch, replacing the values of the batch.
+     *
+     * @param batch batch of the keys whose values are to be looked up
+     * @see #getAll(Key[])
+     */
+    default void getAll(Batch batch) {
+        Key<?>[] keys = batch.keys;
+        Object[] values = batch.values;
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = get(keys[i]);
+        }
+    }
+
+    /**
+     * Associates every key of the given array with the value at the same position of the values
+     * array (optional operation).
+     * <p/>
+     * All the values are type checked before any of them is stored, so if the type of one of the
+     * values does not match its key, none of the values are stored.
+     *
+     * @param keys   keys with which the values are to be associated
+     * @param values values to be associated with the keys
+     * @throws UnsupportedOperationException if the <tt>putAll</tt> operation
+     *         is not supported by this registry
+     * @throws ClassCastException if a value is not an instance of the type of its key
+     * @throws IllegalArgumentException if the arrays are not of the same length
+     * @throws NullPointerException if any of the keys is <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    default void putAll(Key<?>[] keys, Object[] values) {
+        Batch.check(keys, values);
+        for (int i = 0; i < keys.length; i++) {
+            put((Key<Object>) keys[i], values[i]);
+        }
+    }
+
     /**
      * Copies all of the mappings from the specified registry to this registry
      * (optional operation).  The effect of this call is equivalent to that
@@ -151,6 +208,30 @@ public interface Registry {
      */
     <T> void putAll(Registry r);
 
+    /**
+     * Copies all of the mappings from the specified map to this registry
+     * (optional operation).  The effect of this call is equivalent to that
+     * of calling {@link #put(Key, Object) put(k, v)} on this registry once
+     * for each mapping from key <tt>k</tt> to value <tt>v</tt> in the
+     * specified map, after checking that <tt>v</tt> is an instance of the
+     * type of <tt>k</tt>.
+     *
+     * @param m mappings to be stored in this registry
+     * @throws UnsupportedOperationException if the <tt>putAll</tt> operation
+     *         is not supported by this registry
+     * @throws ClassCastException if a value in the specified map is not
+     *         an instance of the type of its key
+     * @throws NullPointerException if the specified map is null, or contains
+     *         a null key
+     */
+    @SuppressWarnings("unchecked")
+    default void putAll(Map<? extends Key<?>, ?> m) {
+        for (Map.Entry<? extends Key<?>, ?> entry : m.entrySet()) {
+            Key<Object> key = (Key<Object>) entry.getKey();
+            put(key, key.getType().cast(entry.getValue()));
+        }
+    }
+
     /**
      * Removes the mapping for a key from this registry if it is present
      * (optional operation).   More formally, if this registry contains a mapping
@@ -270,6 +351,45 @@ public interface Registry {
 
     <T> Collection<? extends T> values(Class<T> type);
 
+    /**
+     * Visits every entry of this registry with the given visitor.
+     * <p/>
+     * This is the cheapest way of scanning the whole registry, as the implementations do not
+     * need to allocate any entry or iterator objects per entry. The behavior of this operation
+     * is undefined if the registry is modified by the visitor.
+     *
+     * @param visitor visitor of the entries
+     * @throws NullPointerException if the specified visitor is null
+     */
+    @SuppressWarnings("unchecked")
+    default void forEach(RegistryVisitor visitor) {
+        Objects.requireNonNull(visitor, "Visitor can not be null");
+        for (Entry<?> entry : entrySet()) {
+            Entry<Object> e = (Entry<Object>) entry;
+            visitor.visit(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Performs the given action for every entry of this registry, whose key type is the
+     * given type or any of its subtypes.
+     * <p/>
+     * This is equivalent to iterating over the {@link #entrySet(Class) typed entry set},
+     * but does not allocate any entry objects. The behavior of this operation is undefined
+     * if the registry is modified by the action.
+     *
+     * @param type   type of the entries to visit
+     * @param action action to be performed for each entry
+     * @param <T>    type of the entries to visit
+     * @throws NullPointerException if the specified type or action is null
+     */
+    default <T> void forEachOfType(Class<T> type, BiConsumer<? super Key<? extends T>, ? super T> action) {
+        Objects.requireNonNull(action, "Action can not be null");
+        for (Entry<? extends T> entry : entrySet(type)) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * Removes all of the mappings from this registry (optional operation).
      * The registry will be empty after this call returns.
@@ -278,4 +398,21 @@ public interface Registry {
      *         is not supported by this map
      */
     void clear();
+
+    /**
+     * Returns an immutable copy of the given registry.
+     * <p/>
+     * The returned registry is laid out for fast lookups and a small memory footprint,
+     * which makes it a good fit for registries that are effectively read-only after
+     * they have been populated. All the mutating operations of the returned registry
+     * throw <tt>UnsupportedOperationException</tt>.
+     *
+     * @param registry registry whose mappings are to be copied
+     * @return an immutable registry containing the mappings of the given registry
+     * @throws NullPointerException if the specified registry is null
+     * @see FrozenRegistry
+     */
+    static Registry copyOf(Registry registry) {
+        return FrozenRegistry.copyOf(registry);
+    }
 }
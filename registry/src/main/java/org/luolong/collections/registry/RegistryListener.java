@@ -0,0 +1,28 @@
+package org.luolong.collections.registry;
+
+import org.luolong.collections.registry.Registry.Key;
+
+import java.util.Set;
+
+/**
+ * Listener of the changes of a {@link VersionedRegistry}.
+ * <p/>
+ * Changes are not delivered one by one: all the keys that have changed since the previous
+ * notification are coalesced into a single batch, which may be delivered some time after
+ * the changes were made.
+ *
+ * @author Roland Tepp
+ * @see VersionedRegistry#addListener(Key, RegistryListener)
+ * @see VersionedRegistry#addListener(Class, RegistryListener)
+ */
+@FunctionalInterface
+public interface RegistryListener {
+
+    /**
+     * Notifies the listener about changed keys.
+     *
+     * @param keys keys that have been put or removed since the previous notification, limited
+     *             to the keys and types the listener has subscribed to
+     */
+    void registryChanged(Set<Key<?>> keys);
+}
@@ -0,0 +1,443 @@
+package org.luolong.collections.registry;
+
+import org.luolong.collections.registry.Registry.Entry;
+import org.luolong.collections.registry.Registry.Key;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming export and import of registries.
+ * <p/>
+ * {@link #writeTo(Registry, OutputStream, ValueCodecs) writeTo} encodes the entries of a registry one
+ * by one while iterating over it, and {@link #readFrom(InputStream, ValueCodecs, Registry) readFrom}
+ * decodes them one by one into a registry, so neither materializes the registry or the stream. The
+ * class names of the key types and the names of the named keys are written once and referred to by
+ * index afterwards, through a string table of bounded size. Memory use is therefore constant,
+ * regardless of the size of the registry, apart from the encoding of the largest value.
+ * <p/>
+ * Values are length-prefixed, so reading only the entries of a given type skips the values of
+ * all the other entries without decoding them.
+ * <p/>
+ * Like {@link MappedRegistry} snapshots, only entries of {@link Keys#of(Class) type keys} and
+ * {@link NamedKey named keys} can be written, and values are encoded with the {@link ValueCodec codec}
+ * registered for the type of their key.
+ *
+ * @author Roland Tepp
+ */
+public final class RegistryStreams {
+    private RegistryStreams() {/* No instantiation allowed */}
+
+    /*
+     * Stream layout (big endian):
+     *
+     *   header:  int magic, varint string table size
+     *   entries: byte key kind, string class name of the key type, [named keys: string name],
+     *            varint value length + 1 (0 for null values), value bytes
+     *   end:     byte END
+     *
+     * Strings are written as a varint reference: 0 for null, 1 for a string that follows and is not
+     * added to the string table, 2 for a string that follows and is added to the string table, or
+     * the index in the string table + 3. Once the string table is full, new strings are written in
+     * place every time.
+     */
+    private static final int MAGIC = 0x52475331; // "RGS1"
+    private static final int STRING_TABLE_SIZE = 4096;
+    private static final byte TYPE_KEY = 0;
+    private static final byte NAMED_KEY = 1;
+    private static final byte END = -1;
+    private static final int NULL_STRING = 0;
+    private static final int INLINE_STRING = 1;
+    private static final int NEW_STRING = 2;
+    private static final int STRING_INDEX = 3;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes the entries of the registry to the output stream. The stream is flushed, but not closed.
+     *
+     * @param registry registry to write
+     * @param out      stream to write to
+     * @param codecs   codecs of the values stored in the registry
+     * @throws IOException              if writing to the stream fails
+     * @throws IllegalArgumentException if the registry contains keys other than type or named keys,
+     *                                  or values without a registered codec
+     */
+    public static void writeTo(Registry registry, OutputStream out, ValueCodecs codecs) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        EntryWriter writer = new EntryWriter(codecs);
+        data.writeInt(MAGIC);
+        writeVarint(STRING_TABLE_SIZE, data);
+        for (Entry<?> entry : registry.entrySet()) {
+            writer.write(entry, data);
+        }
+        data.writeByte(END);
+        data.flush();
+    }
+
+    /**
+     * Writes the entries of the registry to the channel. The channel is not closed.
+     *
+     * @see #writeTo(Registry, OutputStream, ValueCodecs)
+     */
+    public static void writeTo(Registry registry, WritableByteChannel channel, ValueCodecs codecs) throws IOException {
+        writeTo(registry, Channels.newOutputStream(channel), codecs);
+    }
+
+    /**
+     * Reads all the entries from the input stream into the registry, resolving key types with the
+     * context class loader of the current thread. The stream is not closed.
+     *
+     * @see #readFrom(InputStream, ValueCodecs, Registry, Class, ClassLoader)
+     */
+    public static int readFrom(InputStream in, ValueCodecs codecs, Registry registry) throws IOException {
+        return readFrom(in, codecs, registry, Object.class, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Reads the entries of the given type from the input stream into the registry, resolving key
+     * types with the context class loader of the current thread. The stream is not closed.
+     *
+     * @see #readFrom(InputStream, ValueCodecs, Registry, Class, ClassLoader)
+     */
+    public static int readFrom(InputStream in, ValueCodecs codecs, Registry registry, Class<?> type) throws IOException {
+        return readFrom(in, codecs, registry, type, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Reads all the entries from the channel into the registry, resolving key types with the context
+     * class loader of the current thread. The channel is not closed.
+     *
+     * @see #readFrom(InputStream, ValueCodecs, Registry, Class, ClassLoader)
+     */
+    public static int readFrom(ReadableByteChannel channel, ValueCodecs codecs, Registry registry) throws IOException {
+        return readFrom(Channels.newInputStream(channel), codecs, registry);
+    }
+
+    /**
+     * Reads the entries of the given type from the channel into the registry, resolving key types
+     * with the context class loader of the current thread. The channel is not closed.
+     *
+     * @see #readFrom(InputStream, ValueCodecs, Registry, Class, ClassLoader)
+     */
+    public static int readFrom(ReadableByteChannel channel, ValueCodecs codecs, Registry registry, Class<?> type) throws IOException {
+        return readFrom(Channels.newInputStream(channel), codecs, registry, type);
+    }
+
+    /**
+     * Reads the entries whose key type is assignable to the given type from the input stream, and
+     * puts them into the registry.
+     * <p/>
+     * The values of the other entries are skipped without decoding them, and their key types need
+     * not be resolvable by the class loader. The stream is not closed, but the input is buffered, so
+     * bytes following the entries in the stream may be consumed as well.
+     *
+     * @param in          stream written by {@link #writeTo(Registry, OutputStream, ValueCodecs)}
+     * @param codecs      codecs of the values of the entries to read
+     * @param registry    registry to put the entries into
+     * @param type        type of the entries to read, <code>Object.class</code> to read all the entries
+     * @param classLoader class loader used to resolve the key types
+     * @return the number of entries put into the registry
+     * @throws IOException              if reading from the stream fails, the stream is not a registry
+     *                                  stream, or the key type of an entry to read can not be found
+     * @throws IllegalArgumentException if there is no codec registered for the type of an entry to read
+     */
+    public static int readFrom(InputStream in, ValueCodecs codecs, Registry registry, Class<?> type,
+                               ClassLoader classLoader) throws IOException {
+        CountingInputStream counting = new CountingInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        DataInputStream data = new DataInputStream(counting);
+        if (data.readInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a registry stream");
+        }
+        EntryReader reader = new EntryReader(codecs, type, classLoader, readVarint(data));
+        int count = 0;
+        for (byte kind = data.readByte(); kind != END; kind = data.readByte()) {
+            if (reader.read(kind, data, counting, registry)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void writeVarint(int value, DataOutputStream out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    /**
+     * Writes the entries of a stream, maintaining the string table.
+     */
+    private static class EntryWriter {
+        final ValueCodecs codecs;
+        final Map<String, Integer> strings = new HashMap<>();
+        final ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
+        final DataOutputStream valueOut = new DataOutputStream(valueBytes);
+
+        EntryWriter(ValueCodecs codecs) {
+            this.codecs = codecs;
+        }
+
+        <T> void write(Entry<T> entry, DataOutputStream out) throws IOException {
+            Key<T> key = entry.getKey();
+            T value = entry.getValue();
+            if (key instanceof TypeKey) {
+                out.writeByte(TYPE_KEY);
+                writeString(key.getType().getName(), out);
+            } else if (key instanceof NamedKey) {
+                out.writeByte(NAMED_KEY);
+                writeString(key.getType().getName(), out);
+                writeString(((NamedKey<T>) key).getName(), out);
+            } else {
+                throw new IllegalArgumentException("Only type and named keys can be written to a stream: " + key);
+            }
+            if (value == null) {
+                writeVarint(0, out);
+            } else {
+                valueBytes.reset();
+                codecs.forType(key.getType()).write(value, valueOut);
+                writeVarint(valueBytes.size() + 1, out);
+                valueBytes.writeTo(out);
+            }
+        }
+
+        void writeString(String string, DataOutputStream out) throws IOException {
+            if (string == null) {
+                writeVarint(NULL_STRING, out);
+                return;
+            }
+            Integer index = strings.get(string);
+            if (index != null) {
+                writeVarint(index + STRING_INDEX, out);
+            } else if (strings.size() < STRING_TABLE_SIZE) {
+                strings.put(string, strings.size());
+                writeVarint(NEW_STRING, out);
+                out.writeUTF(string);
+            } else {
+                writeVarint(INLINE_STRING, out);
+                out.writeUTF(string);
+            }
+        }
+    }
+
+    /**
+     * Reads the entries of a stream, maintaining the string table and the key types resolved so far.
+     */
+    private static class EntryReader {
+        final ValueCodecs codecs;
+        final Class<?> type;
+        final ClassLoader classLoader;
+        final int tableSize;
+        String[] strings = new String[16];
+        // Key types resolved by the index of their class name in the string table
+        Class<?>[] types = new Class<?>[16];
+        int count;
+        // Index of the last string read, -1 if it is not in the string table
+        int lastIndex;
+
+        EntryReader(ValueCodecs codecs, Class<?> type, ClassLoader classLoader, int tableSize) {
+            this.codecs = codecs;
+            this.type = type;
+            this.classLoader = classLoader;
+            this.tableSize = tableSize;
+        }
+
+        /**
+         * Reads an entry and puts it into the registry, if it is of the requested type.
+         *
+         * @return <code>true</code> if the entry was put into the registry
+         */
+        boolean read(byte kind, DataInputStream in, CountingInputStream counting, Registry registry) throws IOException {
+            if (kind != TYPE_KEY && kind != NAMED_KEY) {
+                throw new StreamCorruptedException("Unknown key kind " + kind);
+            }
+            String typeName = readString(in);
+            if (typeName == null) {
+                throw new StreamCorruptedException("Key type name is null");
+            }
+            Class<?> keyType = keyType(typeName, lastIndex);
+            if (keyType == null) {
+                if (kind == NAMED_KEY) {
+                    skipString(in);
+                }
+                skip(in, readVarint(in) - 1);
+                return false;
+            }
+            String name = kind == NAMED_KEY ? readString(in) : null;
+            int length = readVarint(in) - 1;
+            Key<?> key = kind == TYPE_KEY ? Keys.of(keyType) : Keys.of(keyType, name);
+            if (length < 0) {
+                put(registry, key, null);
+            } else {
+                long start = counting.count;
+                Object value = codecs.forType(keyType).read(in);
+                if (counting.count - start != length) {
+                    throw new StreamCorruptedException("Value codec of " + key + " read "
+                            + (counting.count - start) + " bytes of " + length);
+                }
+                put(registry, key, value);
+            }
+            return true;
+        }
+
+        private static <T> void put(Registry registry, Key<T> key, Object value) {
+            registry.put(key, key.getType().cast(value));
+        }
+
+        String readString(DataInputStream in) throws IOException {
+            int reference = readVarint(in);
+            lastIndex = -1;
+            switch (reference) {
+                case NULL_STRING:
+                    return null;
+                case INLINE_STRING:
+                    return in.readUTF();
+                case NEW_STRING:
+                    lastIndex = count;
+                    return addString(in.readUTF());
+                default:
+                    int index = reference - STRING_INDEX;
+                    if (index >= count) {
+                        throw new StreamCorruptedException("Unknown string " + index);
+                    }
+                    lastIndex = index;
+                    return strings[index];
+            }
+        }
+
+        String addString(String string) throws IOException {
+            if (count == tableSize) {
+                throw new StreamCorruptedException("String table overflow");
+            }
+            if (count == strings.length) {
+                strings = Arrays.copyOf(strings, Math.min(count * 2, tableSize));
+                types = Arrays.copyOf(types, strings.length);
+            }
+            strings[count++] = string;
+            return string;
+        }
+
+        /**
+         * Skips a string, decoding it only if it is added to the string table.
+         */
+        void skipString(DataInputStream in) throws IOException {
+            int reference = readVarint(in);
+            if (reference == INLINE_STRING) {
+                skip(in, in.readUnsignedShort());
+            } else if (reference == NEW_STRING) {
+                addString(in.readUTF());
+            }
+        }
+
+        /**
+         * Returns the key type of the given name, or <code>null</code> if the entries of the type are
+         * not to be read.
+         */
+        Class<?> keyType(String name, int index) throws IOException {
+            Class<?> keyType = index >= 0 ? types[index] : null;
+            if (keyType == null) {
+                keyType = Types.forName(name, classLoader);
+                if (keyType == null) {
+                    keyType = NotFound.class;
+                }
+                if (index >= 0) {
+                    types[index] = keyType;
+                }
+            }
+            if (keyType == NotFound.class) {
+                if (type == Object.class) {
+                    throw new IOException("Key type of a registry stream entry not found: " + name);
+                }
+                // A type that can not be loaded is not assignable to the requested type either
+                return null;
+            }
+            return type == Object.class || type.isAssignableFrom(keyType) ? keyType : null;
+        }
+
+        private static void skip(DataInputStream in, int length) throws IOException {
+            while (length > 0) {
+                int skipped = in.skipBytes(length);
+                if (skipped <= 0) {
+                    in.readByte();
+                    skipped = 1;
+                }
+                length -= skipped;
+            }
+        }
+    }
+
+    /**
+     * Stands in for the key types that can not be found, in the cache of the resolved key types.
+     */
+    private static final class NotFound {
+    }
+
+    /**
+     * Counts the bytes read, so that a value codec reading more or less than the value is detected.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
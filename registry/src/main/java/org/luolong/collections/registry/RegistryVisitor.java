@@ -0,0 +1,25 @@
+package org.luolong.collections.registry;
+
+import org.luolong.collections.registry.Registry.Key;
+
+/**
+ * Visitor of the entries of a registry.
+ * <p/>
+ * Unlike iterating over the {@link Registry#entrySet() entry set}, visiting the registry with
+ * {@link Registry#forEach(RegistryVisitor)} hands over the key and the value of every entry
+ * directly, so the registry does not have to allocate anything per entry.
+ *
+ * @author Roland Tepp
+ * @see Registry#forEach(RegistryVisitor)
+ */
+public interface RegistryVisitor {
+
+    /**
+     * Visits a single entry of the registry.
+     *
+     * @param key   key of the entry
+     * @param value value of the entry, which may be <code>null</code>
+     * @param <T>   type of the value of the entry
+     */
+    <T> void visit(Key<T> key, T value);
+}
@@ -0,0 +1,483 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe registry that partitions its entries across a number of shards, each a
+ * {@link MapRegistry} guarded by a lock of its own.
+ * <p/>
+ * Updates of keys in different shards do not contend at all, so unlike a single (even concurrent)
+ * map, write-heavy workloads scale with the number of cores. Entries are partitioned by the
+ * {@link Partitioning#KEY_HASH hash of the key} by default, or by the {@link Partitioning#KEY_TYPE
+ * type of the key}. The shards are padded, so that the locks and the counters of different shards
+ * never share a cache line.
+ * <p/>
+ * The aggregate {@link #size() size} and views ({@link #entrySet()}, {@link #keySet()},
+ * {@link #values()}) do not lock the registry as a whole. The size is the sum of the sizes of the
+ * shards, and the views visit the shards one after another, copying the entries of each shard
+ * when they reach it. They are consistent within every shard, and miss at most the modifications
+ * that take place while they are being computed. {@link #exactSize()} and {@link #snapshot()}
+ * lock all the shards at once and are exact, at the cost of blocking all the writers meanwhile.
+ * <p/>
+ * Batch operations are not atomic across shards. This registry permits <code>null</code> values,
+ * like {@link MapRegistry}.
+ *
+ * @author Roland Tepp
+ */
+public class ShardedRegistry extends AbstractRegistry {
+
+    /**
+     * How entries are assigned to shards.
+     */
+    public enum Partitioning {
+        /**
+         * By the hash code of the key, which spreads the entries evenly across the shards.
+         */
+        KEY_HASH,
+        /**
+         * By the {@link Key#getType() type} of the key, which keeps all the keys of a type in the
+         * same shard. Keys of a single hot type then contend on a single shard.
+         */
+        KEY_TYPE
+    }
+
+    private static final int MAX_SHARDS = 1 << 16;
+
+    // Four shards per processor keep the odds of two threads writing to the same shard low
+    private static final int DEFAULT_SHARDS = shardCount(Runtime.getRuntime().availableProcessors() * 4);
+
+    private final Shard[] shards;
+    private final int mask;
+    private final Partitioning partitioning;
+
+    /**
+     * Creates a registry partitioned by key hash, with the number of shards based on the number of
+     * available processors.
+     */
+    public ShardedRegistry() {
+        this(DEFAULT_SHARDS, Partitioning.KEY_HASH);
+    }
+
+    /**
+     * Creates a registry with the given partitioning and the number of shards based on the number
+     * of available processors.
+     */
+    public ShardedRegistry(Partitioning partitioning) {
+        this(DEFAULT_SHARDS, partitioning);
+    }
+
+    /**
+     * Creates a new registry.
+     *
+     * @param shards       the number of shards, rounded up to a power of two
+     * @param partitioning how the entries are assigned to shards
+     * @throws IllegalArgumentException if the number of shards is not positive
+     */
+    public ShardedRegistry(int shards, Partitioning partitioning) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive: " + shards);
+        }
+        this.partitioning = Objects.requireNonNull(partitioning, "Partitioning can not be null");
+        this.shards = new Shard[shardCount(shards)];
+        this.mask = this.shards.length - 1;
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    private static int shardCount(int shards) {
+        return shards >= MAX_SHARDS ? MAX_SHARDS : Integer.highestOneBit(Math.max(shards, 1) * 2 - 1);
+    }
+
+    /**
+     * Returns the number of shards.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns how the entries are assigned to shards.
+     */
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        Shard shard = shard(key);
+        long stamp = shard.readLock();
+        try {
+            return shard.registry.get(key);
+        } finally {
+            shard.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        Shard shard = shard(Objects.requireNonNull(key, "Key can not be null"));
+        long stamp = shard.lockForWrite();
+        try {
+            shard.registry.put(key, value);
+            shard.written();
+        } finally {
+            shard.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        Shard shard = shard(key);
+        long stamp = shard.lockForWrite();
+        try {
+            T value = shard.registry.remove(key);
+            if (shard.registry.size() != shard.size) {
+                shard.written();
+            }
+            return value;
+        } finally {
+            shard.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> removeAll(Class<T> type) {
+        Set<Entry<? extends T>> removed = new HashSet<>();
+        for (Shard shard : shards) {
+            long stamp = shard.lockForWrite();
+            try {
+                Set<Entry<? extends T>> entries = shard.registry.removeAll(type);
+                if (!entries.isEmpty()) {
+                    removed.addAll(entries);
+                    shard.written();
+                }
+            } finally {
+                shard.unlockWrite(stamp);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries of this registry.
+     * <p/>
+     * The size is summed up from the sizes of the shards without locking them, so it misses at most
+     * the modifications of the shards that take place while it is being summed up.
+     *
+     * @see #exactSize()
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Shard shard : shards) {
+            if (shard.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of entries of this registry at a single point in time.
+     * <p/>
+     * All the shards are locked while the size is summed up, so modifications of the registry
+     * wait until it is done.
+     */
+    public int exactSize() {
+        long[] stamps = readLockAll();
+        try {
+            int size = 0;
+            for (Shard shard : shards) {
+                size += shard.registry.size();
+            }
+            return size;
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    /**
+     * Returns a copy of this registry at a single point in time.
+     * <p/>
+     * All the shards are locked while the registry is copied, so modifications of the registry
+     * wait until it is done. The views of the returned registry are exact views of this registry.
+     */
+    public Registry snapshot() {
+        MapRegistry copy = new MapRegistry();
+        long[] stamps = readLockAll();
+        try {
+            for (Shard shard : shards) {
+                copy.putAll(shard.registry);
+            }
+        } finally {
+            unlockAll(stamps);
+        }
+        return copy;
+    }
+
+    @Override
+    public void clear() {
+        for (Shard shard : shards) {
+            long stamp = shard.lockForWrite();
+            try {
+                shard.registry.clear();
+                shard.written();
+            } finally {
+                shard.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Returns a view of the entries of this registry.
+     * <p/>
+     * The iterator visits the shards one after another and copies the entries of every shard when
+     * it reaches the shard, so it never throws {@link java.util.ConcurrentModificationException}.
+     * Setting the value of an entry and removing an entry write through to this registry.
+     */
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ShardedRegistry.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return ShardedRegistry.this.isEmpty();
+            }
+
+            @Override
+            public void clear() {
+                ShardedRegistry.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns the statistics of the shards, in the order of the shards.
+     * <p/>
+     * The statistics of every shard are read without locking it, so they may be slightly out of
+     * date while the registry is being modified.
+     */
+    public List<ShardStats> getShardStats() {
+        List<ShardStats> stats = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            stats.add(new ShardStats(shard.size, shard.writes, shard.contendedWrites));
+        }
+        return Collections.unmodifiableList(stats);
+    }
+
+    private Shard shard(Key<?> key) {
+        int hash = partitioning == Partitioning.KEY_HASH ? key.hashCode() : key.getType().hashCode();
+        // The shard is chosen by the high bits of the mixed hash, while the maps of the shards index by the low bits
+        return shards[((hash * 0x9E3779B9) >>> 16) & mask];
+    }
+
+    /**
+     * Locks all the shards in read mode, in the order of the shards. Writers only ever hold the
+     * lock of a single shard, so this does not deadlock.
+     */
+    private long[] readLockAll() {
+        long[] stamps = new long[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            stamps[i] = shards[i].readLock();
+        }
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].unlockRead(stamps[i]);
+        }
+    }
+
+    /**
+     * Copies the entries of the shard, detached from the registry of the shard.
+     */
+    private static Entry<?>[] copyEntries(Shard shard) {
+        long stamp = shard.readLock();
+        try {
+            Entry<?>[] entries = new Entry<?>[shard.registry.size()];
+            int i = 0;
+            for (Entry<?> entry : shard.registry.entrySet()) {
+                entries[i++] = SimpleEntry.copyOf(entry);
+            }
+            return entries;
+        } finally {
+            shard.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Statistics of a single shard.
+     */
+    public static final class ShardStats {
+        private final int size;
+        private final long writes;
+        private final long contendedWrites;
+
+        ShardStats(int size, long writes, long contendedWrites) {
+            this.size = size;
+            this.writes = writes;
+            this.contendedWrites = contendedWrites;
+        }
+
+        /**
+         * Returns the number of entries of the shard.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the number of modifications of the shard.
+         */
+        public long getWrites() {
+            return writes;
+        }
+
+        /**
+         * Returns the number of modifications that had to wait for the lock of the shard.
+         */
+        public long getContendedWrites() {
+            return contendedWrites;
+        }
+
+        @Override
+        public String toString() {
+            return "ShardStats{size=" + size + ", writes=" + writes + ", contendedWrites=" + contendedWrites + "}";
+        }
+    }
+
+    /**
+     * Hot fields of a shard. The shard is its own lock, so that the state of the lock is laid out
+     * next to the fields it guards. Shards are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class ShardFields extends StampedLock {
+        final MapRegistry registry = new MapRegistry();
+        // Written only while holding the write lock, volatile for the lock-free size and statistics
+        volatile int size;
+        volatile long writes;
+        volatile long contendedWrites;
+    }
+
+    /**
+     * Shard padded by two cache lines after its hot fields (the hardware prefetches cache lines
+     * in pairs), so that neighbouring shards do not share a cache line. Superclass fields are laid
+     * out first, so the padding always follows the hot fields.
+     */
+    @SuppressWarnings({"serial", "unused"})
+    private static final class Shard extends ShardFields {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+
+        long lockForWrite() {
+            long stamp = tryWriteLock();
+            if (stamp == 0L) {
+                stamp = writeLock();
+                contendedWrites++;
+            }
+            return stamp;
+        }
+
+        /**
+         * Updates the statistics after a modification, while holding the write lock.
+         */
+        void written() {
+            size = registry.size();
+            writes++;
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<?>> {
+        private int shard;
+        private Entry<?>[] entries = new Entry<?>[0];
+        private int index;
+        private Entry<?> last;
+
+        @Override
+        public boolean hasNext() {
+            while (index == entries.length && shard < shards.length) {
+                entries = copyEntries(shards[shard++]);
+                index = 0;
+            }
+            return index < entries.length;
+        }
+
+        @Override
+        public Entry<?> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = entries[index++];
+            return new ShardEntry<>(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ShardedRegistry.this.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    /**
+     * Copied entry, whose value writes through to the registry.
+     */
+    private class ShardEntry<T> implements Entry<T> {
+        private final Entry<T> entry;
+
+        ShardEntry(Entry<T> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Key<T> getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public T getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public T setValue(T value) {
+            put(entry.getKey(), entry.getKey().getType().cast(value));
+            return entry.setValue(value);
+        }
+
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Base class of the registries generated for the {@link GenerateRegistry} annotated key holders.
+ * <p/>
+ * Every key known at compile time is assigned a slot, which the generated subclass maps to a field
+ * of its own through {@link #read(int)} and {@link #write(int, Object)}. The generated subclass also
+ * overrides <code>get</code> and <code>put</code> with a fast path that compares the key with each of
+ * the key constants by identity: at a call site that passes a key constant, the comparisons are folded
+ * away by the JIT compiler and only the field access remains.
+ * <p/>
+ * Keys that are equal to, but not the same as the key constants are resolved to their slot with a
+ * hash lookup. Keys that are not known at compile time are stored in a {@link MapRegistry}.
+ * <p/>
+ * This implementation is not thread-safe.
+ *
+ * @author Roland Tepp
+ */
+public abstract class StaticRegistry extends AbstractRegistry {
+
+    /**
+     * Value of the fields of the keys that are not mapped to any value.
+     */
+    protected static final Object ABSENT = new Object() {
+        @Override
+        public String toString() {
+            return "absent";
+        }
+    };
+
+    // Keys known at compile time, indexed by their slot
+    private final Key<?>[] keys;
+    private final Map<Key<?>, Integer> slots;
+    // Storage of the keys that are not known at compile time
+    private final MapRegistry fallback = new MapRegistry();
+
+    /**
+     * Creates a new registry.
+     *
+     * @param keys  keys known at compile time, indexed by their slot
+     * @param slots slots of the keys, as returned by {@link #slots(Key[])}
+     */
+    protected StaticRegistry(Key<?>[] keys, Map<Key<?>, Integer> slots) {
+        this.keys = keys;
+        this.slots = slots;
+    }
+
+    /**
+     * Returns the slots of the given keys, to be shared by all the instances of a generated registry.
+     *
+     * @throws IllegalArgumentException if any of the keys is equal to another key
+     */
+    protected static Map<Key<?>, Integer> slots(Key<?>... keys) {
+        Map<Key<?>, Integer> slots = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (slots.put(keys[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate key: " + keys[i]);
+            }
+        }
+        return Collections.unmodifiableMap(slots);
+    }
+
+    /**
+     * Returns the value of the field of the given slot, or {@link #ABSENT} if the key is not mapped.
+     */
+    protected abstract Object read(int slot);
+
+    /**
+     * Sets the value of the field of the given slot.
+     */
+    protected abstract void write(int slot, Object value);
+
+    @Override
+    public <T> T get(Key<T> key) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            return fallback.get(key);
+        }
+        Object value = read(slot);
+        return value == ABSENT ? null : key.getType().cast(value);
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            fallback.put(key, value);
+        } else {
+            write(slot, key.getType().cast(value));
+        }
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            return fallback.remove(key);
+        }
+        Object old = read(slot);
+        write(slot, ABSENT);
+        return old == ABSENT ? null : key.getType().cast(old);
+    }
+
+    @Override
+    public int size() {
+        int size = fallback.size();
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (read(slot) != ABSENT) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int slot = 0; slot < keys.length; slot++) {
+            write(slot, ABSENT);
+        }
+        fallback.clear();
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return StaticRegistry.this.size();
+            }
+
+            @Override
+            public void clear() {
+                StaticRegistry.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the mapped slots first and then over the entries of the fallback registry.
+     */
+    private class EntryIterator implements Iterator<Entry<?>> {
+        private final Iterator<Entry<?>> fallbackIterator = fallback.entrySet().iterator();
+        private int next = advance(0);
+        private int last = -1;
+
+        private int advance(int from) {
+            while (from < keys.length && read(from) == ABSENT) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < keys.length || fallbackIterator.hasNext();
+        }
+
+        @Override
+        public Entry<?> next() {
+            if (next < keys.length) {
+                last = next;
+                next = advance(next + 1);
+                return new SlotEntry<>(last);
+            }
+            if (!fallbackIterator.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = -1;
+            return fallbackIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last >= 0) {
+                write(last, ABSENT);
+                last = -1;
+            } else {
+                fallbackIterator.remove();
+            }
+        }
+    }
+
+    private class SlotEntry<T> implements Entry<T> {
+        private final int slot;
+
+        SlotEntry(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Key<T> getKey() {
+            return (Key<T>) keys[slot];
+        }
+
+        @Override
+        public T getValue() {
+            Object value = read(slot);
+            return value == ABSENT ? null : getKey().getType().cast(value);
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = getValue();
+            write(slot, getKey().getType().cast(value));
+            return old;
+        }
+    }
+}
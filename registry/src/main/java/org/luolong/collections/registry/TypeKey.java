@@ -3,9 +3,11 @@ package org.luolong.collections.registry;
 class TypeKey<T> implements Registry.Key<T> {
 
     private final Class<T> type;
+    private final int hash;
 
     public TypeKey(Class<T> type) {
         this.type = type;
+        this.hash = type.hashCode();
     }
 
     @Override
@@ -15,15 +17,18 @@ class TypeKey<T> implements Registry.Key<T> {
 
     @Override
     public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
         if (other instanceof TypeKey) {
-            return type.equals(((TypeKey) other).type);
+            return type == ((TypeKey) other).type;
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return type.hashCode();
+        return hash;
     }
 
     @Override
@@ -0,0 +1,82 @@
+package org.luolong.collections.registry;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class hierarchy helpers for the type based registry operations.
+ *
+ * @author Roland Tepp
+ */
+final class Types {
+    private Types() {/* No instantiation allowed */}
+
+    private static final Map<String, Class<?>> primitives = new HashMap<>();
+
+    static {
+        for (Class<?> type : Arrays.asList(boolean.class, byte.class, char.class, short.class, int.class,
+                long.class, float.class, double.class, void.class)) {
+            primitives.put(type.getName(), type);
+        }
+    }
+
+    private static final ClassValue<Set<Class<?>>> supertypes = new ClassValue<Set<Class<?>>>() {
+        @Override
+        protected Set<Class<?>> computeValue(Class<?> type) {
+            Set<Class<?>> result = new LinkedHashSet<>();
+            collect(type, result);
+            if (type.isArray() && !type.getComponentType().isPrimitive()) {
+                // Arrays are covariant: String[] is assignable to Object[], CharSequence[], ...
+                for (Class<?> component : supertypes(type.getComponentType())) {
+                    result.add(Array.newInstance(component, 0).getClass());
+                }
+            }
+            if (!type.isPrimitive()) {
+                result.add(Object.class);
+            }
+            return Collections.unmodifiableSet(result);
+        }
+
+        private void collect(Class<?> type, Set<Class<?>> result) {
+            if (type != null && result.add(type)) {
+                collect(type.getSuperclass(), result);
+                for (Class<?> each : type.getInterfaces()) {
+                    collect(each, result);
+                }
+            }
+        }
+    };
+
+    /**
+     * Returns the set of all the types the given type is assignable to, including the type itself,
+     * all its superclasses and all the interfaces it implements.
+     * <p/>
+     * More formally, the returned set contains every type <code>t</code> for which
+     * <code>t.isAssignableFrom(type)</code> is <code>true</code>. The result is computed once per
+     * type and cached for subsequent calls.
+     */
+    static Set<Class<?>> supertypes(Class<?> type) {
+        return supertypes.get(type);
+    }
+
+    /**
+     * Returns the type of the given name, as returned by {@link Class#getName()}, including the
+     * primitive types, or <code>null</code> if the class loader can not find the type.
+     */
+    static Class<?> forName(String name, ClassLoader classLoader) {
+        Class<?> type = primitives.get(name);
+        if (type == null) {
+            try {
+                type = Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+        return type;
+    }
+}
@@ -0,0 +1,30 @@
+package org.luolong.collections.registry;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of registry values of a given type.
+ *
+ * @param <T> type of the values encoded by this codec
+ * @author Roland Tepp
+ * @see ValueCodecs
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Returns the type of the values encoded by this codec.
+     */
+    Class<T> getType();
+
+    /**
+     * Writes the given (non-<code>null</code>) value to the output.
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads a value written by {@link #write(Object, DataOutput)} from the input.
+     */
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,169 @@
+package org.luolong.collections.registry;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Set of {@link ValueCodec value codecs}, by the type of the values they encode.
+ * <p/>
+ * Codecs are looked up by the exact type of the registry {@link Registry.Key key}, so a codec
+ * has to be registered for every key type that is to be encoded.
+ *
+ * @author Roland Tepp
+ */
+public class ValueCodecs {
+
+    public static final ValueCodec<String> STRING = new ValueCodec<String>() {
+        @Override
+        public Class<String> getType() {
+            return String.class;
+        }
+
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    public static final ValueCodec<Integer> INTEGER = new ValueCodec<Integer>() {
+        @Override
+        public Class<Integer> getType() {
+            return Integer.class;
+        }
+
+        @Override
+        public void write(Integer value, DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    public static final ValueCodec<Long> LONG = new ValueCodec<Long>() {
+        @Override
+        public Class<Long> getType() {
+            return Long.class;
+        }
+
+        @Override
+        public void write(Long value, DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    public static final ValueCodec<Double> DOUBLE = new ValueCodec<Double>() {
+        @Override
+        public Class<Double> getType() {
+            return Double.class;
+        }
+
+        @Override
+        public void write(Double value, DataOutput out) throws IOException {
+            out.writeDouble(value);
+        }
+
+        @Override
+        public Double read(DataInput in) throws IOException {
+            return in.readDouble();
+        }
+    };
+
+    public static final ValueCodec<Boolean> BOOLEAN = new ValueCodec<Boolean>() {
+        @Override
+        public Class<Boolean> getType() {
+            return Boolean.class;
+        }
+
+        @Override
+        public void write(Boolean value, DataOutput out) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        @Override
+        public Boolean read(DataInput in) throws IOException {
+            return in.readBoolean();
+        }
+    };
+
+    public static final ValueCodec<byte[]> BYTES = new ValueCodec<byte[]>() {
+        @Override
+        public Class<byte[]> getType() {
+            return byte[].class;
+        }
+
+        @Override
+        public void write(byte[] value, DataOutput out) throws IOException {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+
+        @Override
+        public byte[] read(DataInput in) throws IOException {
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            return value;
+        }
+    };
+
+    private final Map<Class<?>, ValueCodec<?>> codecs = new HashMap<>();
+
+    /**
+     * Creates an empty set of codecs.
+     */
+    public ValueCodecs() {
+    }
+
+    /**
+     * Returns a new set of codecs containing the codecs for <code>String</code>, <code>Integer</code>,
+     * <code>Long</code>, <code>Double</code>, <code>Boolean</code> and <code>byte[]</code> values.
+     */
+    public static ValueCodecs defaults() {
+        return new ValueCodecs()
+                .register(STRING)
+                .register(INTEGER)
+                .register(LONG)
+                .register(DOUBLE)
+                .register(BOOLEAN)
+                .register(BYTES);
+    }
+
+    /**
+     * Registers the codec for the values of its type, replacing any previously registered codec for the type.
+     *
+     * @return this set of codecs
+     */
+    public ValueCodecs register(ValueCodec<?> codec) {
+        codecs.put(codec.getType(), codec);
+        return this;
+    }
+
+    /**
+     * Returns the codec for the values of the given type.
+     *
+     * @throws IllegalArgumentException if there is no codec registered for the type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ValueCodec<T> forType(Class<T> type) {
+        ValueCodec<T> codec = (ValueCodec<T>) codecs.get(type);
+        if (codec == null) {
+            throw new IllegalArgumentException("No value codec registered for " + type.getName());
+        }
+        return codec;
+    }
+}
@@ -0,0 +1,521 @@
+package org.luolong.collections.registry;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Registry decorator that tracks modifications of the decorated registry.
+ * <p/>
+ * Every modification increments the {@link #version() version} of the registry and updates the
+ * {@link #version(Class) versions} of the key type and all its supertypes. Versions only ever
+ * increase, so a component that caches values pulled from the registry can keep the version it
+ * has seen and compare it with the current version, instead of looking the values up again.
+ * <p/>
+ * Listeners can subscribe to the changes of a {@link #addListener(Key, RegistryListener) key} or a
+ * {@link #addListener(Class, RegistryListener) type}. The changes are coalesced and delivered in
+ * batches by the executor of the registry, never synchronously by the modifying operation
+ * (unless the executor runs the tasks in the calling thread). Batches are delivered one at a time.
+ * <p/>
+ * Only the modifications made through this registry are tracked. This registry is thread-safe
+ * if the decorated registry is.
+ *
+ * @author Roland Tepp
+ */
+public class VersionedRegistry extends AbstractRegistry {
+
+    private final Registry registry;
+    private final Executor executor;
+
+    private final AtomicLong version = new AtomicLong();
+    // Versions of the types that have been asked for, set to the global version of their last modification
+    private final ConcurrentHashMap<Class<?>, AtomicLong> typeVersions = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Key<?>, List<RegistryListener>> keyListeners = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, List<RegistryListener>> typeListeners = new ConcurrentHashMap<>();
+
+    // Keys changed since the last delivery
+    private final Set<Key<?>> pending = ConcurrentHashMap.newKeySet();
+    // Number of changes that the delivery task has not seen yet, the task is running while it is non-zero
+    private final AtomicInteger undelivered = new AtomicInteger();
+
+    /**
+     * Creates a new registry, that delivers the change events in the common fork-join pool.
+     *
+     * @param registry registry to decorate
+     */
+    public VersionedRegistry(Registry registry) {
+        this(registry, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new registry.
+     *
+     * @param registry registry to decorate
+     * @param executor executor delivering the change events
+     */
+    public VersionedRegistry(Registry registry, Executor executor) {
+        this.registry = Objects.requireNonNull(registry, "Registry can not be null");
+        this.executor = Objects.requireNonNull(executor, "Executor can not be null");
+    }
+
+    /**
+     * Returns the modification version of this registry, which is incremented by every modification.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Returns the modification version of the entries of the given type.
+     * <p/>
+     * The version changes whenever an entry is put or removed, whose key type is the given type
+     * or any of its subtypes.
+     *
+     * @param type type of the entries
+     * @return the version of the entries of the type
+     */
+    public long version(Class<?> type) {
+        AtomicLong typeVersion = typeVersions.get(type);
+        if (typeVersion == null) {
+            // No modifications of the type have been recorded yet, so the current version will do
+            typeVersion = typeVersions.computeIfAbsent(type, t -> new AtomicLong(version.get()));
+        }
+        return typeVersion.get();
+    }
+
+    /**
+     * Subscribes the listener to the changes of the given key.
+     *
+     * @param key      key to listen to
+     * @param listener listener to notify
+     */
+    public void addListener(Key<?> key, RegistryListener listener) {
+        keyListeners.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>())
+                .add(Objects.requireNonNull(listener, "Listener can not be null"));
+    }
+
+    /**
+     * Subscribes the listener to the changes of the entries of the given type or any of its subtypes.
+     *
+     * @param type     type to listen to
+     * @param listener listener to notify
+     */
+    public void addListener(Class<?> type, RegistryListener listener) {
+        typeListeners.computeIfAbsent(type, t -> new CopyOnWriteArrayList<>())
+                .add(Objects.requireNonNull(listener, "Listener can not be null"));
+    }
+
+    /**
+     * Unsubscribes the listener from all the keys and types it has subscribed to.
+     * <p/>
+     * A batch that is being delivered may still be delivered to the listener.
+     *
+     * @param listener listener to remove
+     */
+    public void removeListener(RegistryListener listener) {
+        for (List<RegistryListener> listeners : keyListeners.values()) {
+            listeners.remove(listener);
+        }
+        for (List<RegistryListener> listeners : typeListeners.values()) {
+            listeners.remove(listener);
+        }
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        return registry.get(key);
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        registry.put(key, value);
+        changed(key);
+    }
+
+    @Override
+    public <T> void putAll(Registry r) {
+        registry.putAll(r);
+        changed(r.keySet());
+    }
+
+    @Override
+    public void putAll(Map<? extends Key<?>, ?> m) {
+        registry.putAll(m);
+        changed(m.keySet());
+    }
+
+    @Override
+    public void getAll(Batch batch) {
+        registry.getAll(batch);
+    }
+
+    @Override
+    public void putAll(Key<?>[] keys, Object[] values) {
+        registry.putAll(keys, values);
+        changed(Arrays.asList(keys));
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        // A null value may stand for a key without a mapping, which is not a change. The two are
+        // told apart by the size of the decorated registry, rather than by scanning its keys.
+        boolean mapped = registry.get(key) != null;
+        int size = mapped ? 0 : registry.size();
+        T old = registry.remove(key);
+        if (mapped || old != null || registry.size() != size) {
+            changed(key);
+        }
+        return old;
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> removeAll(Class<T> type) {
+        Set<Entry<? extends T>> removed = registry.removeAll(type);
+        List<Key<?>> keys = new ArrayList<>(removed.size());
+        for (Entry<? extends T> entry : removed) {
+            keys.add(entry.getKey());
+        }
+        changed(keys);
+        return removed;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return registry.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return registry.size();
+    }
+
+    @Override
+    public void clear() {
+        List<Key<?>> keys = new ArrayList<>(registry.keySet());
+        registry.clear();
+        changed(keys);
+    }
+
+    @Override
+    public void forEach(RegistryVisitor visitor) {
+        registry.forEach(visitor);
+    }
+
+    @Override
+    public <T> void forEachOfType(Class<T> type, BiConsumer<? super Key<? extends T>, ? super T> action) {
+        registry.forEachOfType(type, action);
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new EntryView<>(registry.entrySet());
+    }
+
+    @Override
+    public Set<Key<?>> keySet() {
+        return new KeyView<>(registry.keySet());
+    }
+
+    @Override
+    public Collection<?> values() {
+        return new ValueView<>(entrySet());
+    }
+
+    @Override
+    public <T> Set<Entry<? extends T>> entrySet(Class<T> type) {
+        return new EntryView<>(registry.entrySet(type));
+    }
+
+    @Override
+    public <T> Set<Key<? extends T>> keySet(Class<T> type) {
+        return new KeyView<>(registry.keySet(type));
+    }
+
+    @Override
+    public <T> Collection<? extends T> values(Class<T> type) {
+        return new ValueView<T>(entrySet(type));
+    }
+
+    private void changed(Key<?> key) {
+        record(key, version.incrementAndGet());
+        schedule();
+    }
+
+    private void changed(Collection<? extends Key<?>> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        long current = version.incrementAndGet();
+        for (Key<?> key : keys) {
+            record(key, current);
+        }
+        schedule();
+    }
+
+    private void record(Key<?> key, long current) {
+        if (!typeVersions.isEmpty()) {
+            for (Class<?> type : Types.supertypes(key.getType())) {
+                AtomicLong typeVersion = typeVersions.get(type);
+                if (typeVersion != null) {
+                    typeVersion.accumulateAndGet(current, Math::max);
+                }
+            }
+        }
+        if (!keyListeners.isEmpty() || !typeListeners.isEmpty()) {
+            pending.add(key);
+        }
+    }
+
+    private void schedule() {
+        if (!pending.isEmpty() && undelivered.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::deliver);
+            } catch (RuntimeException e) {
+                // No delivery task is running, so the next change schedules one for the pending changes
+                undelivered.set(0);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Delivers the pending changes until there are no more changes, that it has not seen.
+     */
+    private void deliver() {
+        RuntimeException failure = null;
+        int missed = undelivered.get();
+        do {
+            failure = deliverPending(failure);
+            missed = undelivered.addAndGet(-missed);
+        } while (missed != 0);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Delivers the pending changes to the listeners.
+     * <p/>
+     * Exceptions thrown by the listeners do not prevent delivering the changes to the other
+     * listeners, but are collected to be rethrown once all the changes have been delivered.
+     */
+    private RuntimeException deliverPending(RuntimeException failure) {
+        Map<RegistryListener, Set<Key<?>>> batches = new LinkedHashMap<>();
+        for (Iterator<Key<?>> iterator = pending.iterator(); iterator.hasNext(); ) {
+            Key<?> key = iterator.next();
+            iterator.remove();
+            batch(batches, keyListeners.get(key), key);
+            for (Class<?> type : Types.supertypes(key.getType())) {
+                batch(batches, typeListeners.get(type), key);
+            }
+        }
+        for (Map.Entry<RegistryListener, Set<Key<?>>> batch : batches.entrySet()) {
+            try {
+                batch.getKey().registryChanged(Collections.unmodifiableSet(batch.getValue()));
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        return failure;
+    }
+
+    private static void batch(Map<RegistryListener, Set<Key<?>>> batches, List<RegistryListener> listeners, Key<?> key) {
+        if (listeners != null) {
+            for (RegistryListener listener : listeners) {
+                Set<Key<?>> keys = batches.get(listener);
+                if (keys == null) {
+                    batches.put(listener, keys = new HashSet<>());
+                }
+                keys.add(key);
+            }
+        }
+    }
+
+    private <T> Entry<T> versioned(Entry<T> entry) {
+        return new VersionedEntry<>(entry);
+    }
+
+    /**
+     * Key view of the decorated registry, that records the keys removed through it.
+     */
+    private class KeyView<K extends Key<?>> extends AbstractSet<K> {
+        private final Set<K> keys;
+
+        KeyView(Set<K> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            final Iterator<K> iterator = keys.iterator();
+            return new Iterator<K>() {
+                private K last;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return last = iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    changed(last);
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return keys.contains(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (keys.remove(o)) {
+                changed((Key<?>) o);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+    }
+
+    /**
+     * Entry view of the decorated registry, that records the changes made through it.
+     */
+    private class EntryView<E extends Entry<?>> extends AbstractSet<E> {
+        private final Set<E> entries;
+
+        EntryView(Set<E> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            final Iterator<E> iterator = entries.iterator();
+            return new Iterator<E>() {
+                private Key<?> last;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public E next() {
+                    Entry<?> entry = iterator.next();
+                    last = entry.getKey();
+                    return (E) versioned(entry);
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    changed(last);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Values of an entry view.
+     */
+    private static class ValueView<T> extends AbstractCollection<T> {
+        private final Set<? extends Entry<? extends T>> entries;
+
+        ValueView(Set<? extends Entry<? extends T>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            final Iterator<? extends Entry<? extends T>> iterator = entries.iterator();
+            return new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return iterator.next().getValue();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Entry of the decorated registry, that records the changes made with <code>setValue</code>.
+     */
+    private class VersionedEntry<T> implements Entry<T> {
+        private final Entry<T> entry;
+
+        VersionedEntry(Entry<T> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Key<T> getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public T getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public T setValue(T value) {
+            T old = entry.setValue(value);
+            changed(getKey());
+            return old;
+        }
+    }
+}
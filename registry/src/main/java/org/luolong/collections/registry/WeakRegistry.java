@@ -0,0 +1,393 @@
+package org.luolong.collections.registry;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implementation of Registry that holds its keys weakly, so that registering a key does not keep
+ * it, or the class loader of its type, from being garbage collected.
+ * <p/>
+ * Registries of plugin-defined keys use this registry, so that unloading a plugin class loader
+ * also removes the entries of its keys. Once the key of an entry is no longer strongly reachable,
+ * the entry is removed on the next operation of the registry, which drains the reference queue
+ * of the collected keys. No background thread is involved. Until then, the collected entries are
+ * still included in the {@link #size() size} and skipped by the iterators.
+ * <p/>
+ * Keys are compared by <code>equals</code>, so {@link IdentityKey identity keys} are matched by
+ * identity and {@link NamedKey named keys} and type keys by value. Note that an entry only lives
+ * as long as the key instance it was put with: type keys and {@link Keys#intern(Class, String)
+ * interned} named keys are retained as long as their type is, while a key created with
+ * {@link Keys#of(Class, String)} has to be kept by the caller.
+ * <p/>
+ * Values are held strongly, unless the registry is created {@link #withSoftValues() with soft
+ * values}. A strongly held value that refers to its own key, e.g. through the class of the value,
+ * keeps the entry alive. Soft values break such chains, but only once the garbage collector clears
+ * them on demand for memory.
+ * <p/>
+ * This implementation is not thread-safe, and even the lookups modify the registry.
+ *
+ * @author Roland Tepp
+ */
+public class WeakRegistry extends AbstractRegistry {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final boolean softValues;
+
+    // Collected keys, and with soft values also collected values, whose entries are to be removed
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    private Node[] table = new Node[INITIAL_CAPACITY];
+    private int size;
+    private int threshold = INITIAL_CAPACITY * 3 / 4;
+    private int modCount;
+
+    /**
+     * Creates a registry with weak keys and strongly held values.
+     */
+    public WeakRegistry() {
+        this(false);
+    }
+
+    private WeakRegistry(boolean softValues) {
+        this.softValues = softValues;
+    }
+
+    /**
+     * Creates a registry with weak keys and softly held values.
+     * <p/>
+     * Values that are not strongly reachable otherwise are cleared by the garbage collector when it
+     * needs memory, and their entries are removed like the entries of collected keys.
+     */
+    public static WeakRegistry withSoftValues() {
+        return new WeakRegistry(true);
+    }
+
+    @Override
+    public <T> T get(Key<T> key) {
+        expunge();
+        Node node = find(key);
+        return key.getType().cast(node == null ? null : node.value());
+    }
+
+    @Override
+    public <T> void put(Key<T> key, T value) {
+        Objects.requireNonNull(key, "Key can not be null");
+        expunge();
+        int hash = hash(key);
+        Node[] table = this.table;
+        int index = hash & (table.length - 1);
+        for (Node node = table[index]; node != null; node = node.next) {
+            if (node.hash == hash && key.equals(node.get())) {
+                node.setValue(value);
+                return;
+            }
+        }
+        Node node = new Node(key, hash, queue, table[index]);
+        node.setValue(value);
+        table[index] = node;
+        modCount++;
+        if (++size > threshold) {
+            resize();
+        }
+    }
+
+    @Override
+    public <T> T remove(Key<T> key) {
+        expunge();
+        Node node = find(key);
+        if (node == null) {
+            return null;
+        }
+        Object value = node.value();
+        unlink(node);
+        node.discard();
+        modCount++;
+        return key.getType().cast(value);
+    }
+
+    @Override
+    public int size() {
+        expunge();
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        while (queue.poll() != null) {
+            // The entries of the queued references are removed with the table
+        }
+        Arrays.fill(table, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<?>> entrySet() {
+        return new AbstractSet<Entry<?>>() {
+            @Override
+            public Iterator<Entry<?>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return WeakRegistry.this.size();
+            }
+
+            @Override
+            public void clear() {
+                WeakRegistry.this.clear();
+            }
+        };
+    }
+
+    private static int hash(Key<?> key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Node find(Key<?> key) {
+        int hash = hash(key);
+        Node[] table = this.table;
+        for (Node node = table[hash & (table.length - 1)]; node != null; node = node.next) {
+            if (node.hash == hash) {
+                Key<?> candidate = node.get();
+                if (candidate == key || key.equals(candidate)) {
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the entries of the keys and the values collected since the last operation.
+     */
+    private void expunge() {
+        for (Reference<?> reference; (reference = queue.poll()) != null; ) {
+            Node node;
+            if (reference instanceof SoftValue) {
+                node = ((SoftValue) reference).node;
+                if (node.value != reference) {
+                    // The value was replaced since
+                    continue;
+                }
+            } else {
+                node = (Node) reference;
+            }
+            if (unlink(node)) {
+                node.discard();
+            }
+        }
+    }
+
+    /**
+     * Removes the node from the table.
+     *
+     * @return <code>false</code> if the node has already been removed
+     */
+    private boolean unlink(Node node) {
+        Node[] table = this.table;
+        int index = node.hash & (table.length - 1);
+        Node prev = null;
+        for (Node each = table[index]; each != null; prev = each, each = each.next) {
+            if (each == node) {
+                if (prev == null) {
+                    table[index] = node.next;
+                } else {
+                    prev.next = node.next;
+                }
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void resize() {
+        Node[] oldTable = table;
+        if (oldTable.length == MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        Node[] newTable = new Node[oldTable.length * 2];
+        int mask = newTable.length - 1;
+        for (Node node : oldTable) {
+            while (node != null) {
+                Node next = node.next;
+                if (node.get() == null) {
+                    // Collected, the queued reference no longer finds the node
+                    node.discard();
+                    size--;
+                } else {
+                    int index = node.hash & mask;
+                    node.next = newTable[index];
+                    newTable[index] = node;
+                }
+                node = next;
+            }
+        }
+        table = newTable;
+        threshold = newTable.length * 3 / 4;
+    }
+
+    /**
+     * Entry of the registry, a weak reference to its key.
+     */
+    private final class Node extends WeakReference<Key<?>> {
+        final int hash;
+        // The value, or with soft values the SoftValue holding it, null for null values
+        Object value;
+        Node next;
+
+        Node(Key<?> key, int hash, ReferenceQueue<Object> queue, Node next) {
+            super(key, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+
+        Object value() {
+            Object value = this.value;
+            return value instanceof SoftValue ? ((SoftValue) value).get() : value;
+        }
+
+        Object setValue(Object value) {
+            Object old = value();
+            if (this.value instanceof SoftValue) {
+                ((SoftValue) this.value).clear();
+            }
+            this.value = softValues && value != null ? new SoftValue(value, this, queue) : value;
+            return old;
+        }
+
+        /**
+         * Clears the references of a removed node, so that they are not queued any more.
+         */
+        void discard() {
+            clear();
+            if (value instanceof SoftValue) {
+                ((SoftValue) value).clear();
+            }
+            value = null;
+        }
+    }
+
+    /**
+     * Soft reference to a value, that knows its entry.
+     */
+    private static final class SoftValue extends SoftReference<Object> {
+        final Node node;
+
+        SoftValue(Object value, Node node, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.node = node;
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<?>> {
+        private final Node[] table = WeakRegistry.this.table;
+        private int index;
+        private Node node;
+        // Strong references to the keys of the next and the last returned entry, while iterating
+        private Key<?> nextKey;
+        private Node next;
+        private Node last;
+        private int expectedModCount;
+
+        EntryIterator() {
+            expunge();
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                while (node == null) {
+                    if (index == table.length) {
+                        return false;
+                    }
+                    node = table[index++];
+                }
+                Key<?> key = node.get();
+                if (key != null) {
+                    nextKey = key;
+                    next = node;
+                }
+                node = node.next;
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<?> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            Entry<?> entry = new NodeEntry<>(nextKey, next);
+            next = null;
+            nextKey = null;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (unlink(last)) {
+                last.discard();
+                expectedModCount = ++modCount;
+            }
+            last = null;
+        }
+    }
+
+    private static final class NodeEntry<T> implements Entry<T> {
+        private final Key<T> key;
+        private final Node node;
+
+        @SuppressWarnings("unchecked")
+        NodeEntry(Key<?> key, Node node) {
+            this.key = (Key<T>) key;
+            this.node = node;
+        }
+
+        @Override
+        public Key<T> getKey() {
+            return key;
+        }
+
+        @Override
+        public T getValue() {
+            return key.getType().cast(node.value());
+        }
+
+        @Override
+        public T setValue(T value) {
+            return key.getType().cast(node.setValue(key.getType().cast(value)));
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+public class ArrayRegistrySpec extends Specification {
+
+    def registry = new ArrayRegistry()
+
+    def "indexed keys are stored by their slot"() {
+        def first = Keys.indexed(String.class)
+        def second = Keys.indexed(Integer.class)
+
+        when:
+        registry.put(first, "first")
+        registry.put(second, 2)
+
+        then:
+        registry.get(first) == "first"
+        registry.get(second) == 2
+        registry.size() == 2
+    }
+
+    def "other keys fall back to the map storage"() {
+        def indexed = Keys.indexed(String.class)
+        def named = Keys.of(String.class, "named")
+
+        when:
+        registry.put(indexed, "indexed")
+        registry.put(named, "named")
+
+        then:
+        registry.get(named) == "named"
+        registry.get(Keys.of(String.class, "named")) == "named"
+        registry.keySet() == [indexed, named] as Set
+    }
+
+    def "indexed key can be mapped to null"() {
+        def key = Keys.indexed(String.class)
+
+        when:
+        registry.put(key, null)
+
+        then:
+        registry.size() == 1
+        registry.get(key) == null
+        registry.keySet().contains(key)
+    }
+
+    def "remove clears the slot"() {
+        def key = Keys.indexed(String.class)
+        registry.put(key, "value")
+
+        when:
+        def removed = registry.remove(key)
+
+        then:
+        removed == "value"
+        registry.get(key) == null
+        registry.isEmpty()
+    }
+
+    def "unknown indexed key is not found"() {
+        expect:
+        registry.get(Keys.indexed(String.class)) == null
+        registry.remove(Keys.indexed(String.class)) == null
+    }
+
+    def "entries can be removed through the entry set"() {
+        def indexed = Keys.indexed(String.class)
+        def named = Keys.of(String.class, "named")
+        registry.put(indexed, "indexed")
+        registry.put(named, "named")
+
+        when:
+        def iterator = registry.entrySet().iterator()
+        while (iterator.hasNext()) {
+            iterator.next()
+            iterator.remove()
+        }
+
+        then:
+        registry.isEmpty()
+    }
+}
@@ -0,0 +1,145 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+public class AsyncRegistrySpec extends Specification {
+
+    def registry = new AsyncRegistry(new ConcurrentRegistry())
+    def key = Keys.of(String.class, "remote")
+
+    def "value of the registry is returned as a completed future"() {
+        registry.put(key, "value")
+
+        expect:
+        registry.getAsync(key).getNow(null) == "value"
+        registry.getAsync(Keys.of(String.class, "absent")).isDone()
+        registry.getAsync(Keys.of(String.class, "absent")).getNow("none") == null
+    }
+
+    def "concurrent loads of the same key share the in-flight future"() {
+        def load = new CompletableFuture<String>()
+        def invocations = new AtomicInteger()
+
+        when:
+        def first = registry.computeIfAbsentAsync(key, { invocations.incrementAndGet(); load })
+        def second = registry.computeIfAbsentAsync(key, { invocations.incrementAndGet(); load })
+        def read = registry.getAsync(key)
+
+        then:
+        invocations.get() == 1
+        second.is(first)
+        read.is(first)
+        !first.isDone()
+        registry.loading() == 1
+
+        when:
+        load.complete("loaded")
+
+        then:
+        first.getNow(null) == "loaded"
+        registry.get(key) == "loaded"
+        registry.loading() == 0
+        registry.computeIfAbsentAsync(key, { throw new AssertionError() }).getNow(null) == "loaded"
+    }
+
+    def "failed load stores nothing and is retried by the next call"() {
+        def failing = new CompletableFuture<String>()
+
+        when:
+        def first = registry.computeIfAbsentAsync(key, { failing })
+        failing.completeExceptionally(new IllegalStateException("unavailable"))
+        first.join()
+
+        then:
+        def e = thrown(CompletionException)
+        e.cause instanceof IllegalStateException
+        registry.get(key) == null
+        registry.loading() == 0
+
+        when:
+        def second = registry.computeIfAbsentAsync(key, { CompletableFuture.completedFuture("loaded") })
+
+        then:
+        second.join() == "loaded"
+    }
+
+    def "loader exceptions complete the future exceptionally"() {
+        when:
+        def future = registry.computeIfAbsentAsync(key, { throw new IllegalArgumentException("bad key") })
+
+        then:
+        future.isCompletedExceptionally()
+        registry.loading() == 0
+    }
+
+    def "loaded null is not stored"() {
+        when:
+        def future = registry.computeIfAbsentAsync(key, { CompletableFuture.completedFuture(null) })
+
+        then:
+        future.join() == null
+        !registry.keySet().contains(key)
+    }
+
+    def "loaded value of the wrong type fails the load"() {
+        Registry.Key raw = key
+
+        when:
+        registry.computeIfAbsentAsync(raw, { CompletableFuture.completedFuture(42) }).join()
+
+        then:
+        def e = thrown(CompletionException)
+        e.cause instanceof ClassCastException
+        registry.get(key) == null
+    }
+
+    def "many threads loading the same key invoke the loader once"() {
+        def pool = Executors.newFixedThreadPool(16)
+        def invocations = new AtomicInteger()
+        def load = new CompletableFuture<String>()
+        def started = new CountDownLatch(1000)
+        def futures = Collections.synchronizedList([])
+
+        when:
+        1000.times {
+            pool.execute {
+                futures << registry.computeIfAbsentAsync(key, { invocations.incrementAndGet(); load })
+                started.countDown()
+            }
+        }
+        started.await(10, TimeUnit.SECONDS)
+        load.complete("loaded")
+
+        then:
+        invocations.get() == 1
+        futures*.join().every { it == "loaded" }
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def "views are forwarded to the decorated registry"() {
+        def backing = Spy(MapRegistry)
+        def decorated = new AsyncRegistry(backing)
+        decorated.put(Keys.of(Integer.class, "one"), 1)
+        decorated.put(Keys.of(String.class, "string"), "string")
+
+        when:
+        def keys = decorated.keySet(Number.class)
+        def values = decorated.values(Number.class)
+
+        then:
+        1 * backing.keySet(Number.class)
+        1 * backing.values(Number.class)
+        0 * backing.entrySet()
+        keys == [Keys.of(Integer.class, "one")] as Set
+        values as List == [1]
+    }
+}
@@ -0,0 +1,162 @@
+package org.luolong.collections.registry
+
+import org.luolong.collections.registry.Registry.Key
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+public class BatchSpec extends Specification {
+
+    static final Key<String> NAME = Keys.indexed(String.class)
+    static final Key<Integer> PORT = Keys.of(Integer.class, "port")
+    static final Key<Long> TIMEOUT = Keys.indexed(Long.class)
+
+    def "batch holds the values of the keys"(Registry registry) {
+        registry.put(NAME, "registry")
+        registry.put(PORT, 8080)
+
+        when:
+        def batch = registry.getAll(TIMEOUT, NAME, PORT)
+
+        then:
+        batch.size() == 3
+        batch.get(NAME) == "registry"
+        batch.get(PORT) == 8080
+        batch.get(TIMEOUT) == null
+        batch.key(1) == NAME
+        batch.value(2) == 8080
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "batch can be reused for further lookups"(Registry registry) {
+        def batch = new Batch(NAME, PORT)
+        registry.put(NAME, "first")
+        registry.getAll(batch)
+
+        when:
+        registry.put(NAME, "second")
+        registry.remove(PORT)
+        registry.getAll(batch)
+
+        then:
+        batch.get(NAME) == "second"
+        batch.get(PORT) == null
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "equal keys find their values in the batch"() {
+        def batch = new MapRegistry().getAll(Keys.of(String.class, "name"))
+
+        when:
+        batch.get(Keys.of(String.class, "name"))
+        batch.get(Keys.of(String.class, "other"))
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.contains("other")
+    }
+
+    def "values are type checked when set into the batch"() {
+        def batch = new Batch(NAME, PORT)
+
+        when:
+        batch.set(1, 8080)
+
+        then:
+        batch.get(PORT) == 8080
+
+        when:
+        batch.set(0, 42)
+
+        then:
+        thrown(ClassCastException)
+        batch.get(NAME) == null
+    }
+
+    def "slot order puts the indexed keys first"() {
+        def batch = new Batch(PORT, TIMEOUT, NAME)
+
+        expect:
+        batch.slotOrder() as List == [2, 1, 0]
+    }
+
+    def "batch of keys is put into the registry"(Registry registry) {
+        when:
+        registry.putAll([NAME, PORT, TIMEOUT] as Key[], ["registry", 8080, 1000L] as Object[])
+
+        then:
+        registry.get(NAME) == "registry"
+        registry.get(PORT) == 8080
+        registry.get(TIMEOUT) == 1000L
+        registry.keySet(Number.class) == [PORT, TIMEOUT] as Set
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "nothing is put if a value does not match its key"(Registry registry) {
+        when:
+        registry.putAll([NAME, PORT] as Key[], ["registry", "8080"] as Object[])
+
+        then:
+        thrown(ClassCastException)
+        registry.isEmpty()
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "keys and values must be of the same length"() {
+        when:
+        new MapRegistry().putAll([NAME, PORT] as Key[], ["registry"] as Object[])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "immutable registry does not accept batches"() {
+        when:
+        Registry.copyOf(new MapRegistry()).putAll([NAME] as Key[], ["registry"] as Object[])
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "batch lookup of a concurrent registry sees all or none of a batch update"() {
+        def registry = new ConcurrentRegistry()
+        def keys = [NAME, PORT, TIMEOUT] as Key[]
+        registry.putAll(keys, ["0", 0, 0L] as Object[])
+        def running = new AtomicBoolean(true)
+        def writer = Thread.start {
+            for (int i = 1; running.get(); i++) {
+                registry.putAll(keys, [String.valueOf(i), i, (long) i] as Object[])
+            }
+        }
+        def batch = new Batch(keys)
+        def consistent = true
+
+        when:
+        10000.times {
+            registry.getAll(batch)
+            def port = batch.get(PORT)
+            consistent &= batch.get(NAME) == String.valueOf(port) && batch.get(TIMEOUT) == (long) port
+        }
+        running.set(false)
+        writer.join()
+
+        then:
+        consistent
+    }
+
+    def "batch lookup creates lazy values"() {
+        def registry = new ConcurrentRegistry()
+        registry.putLazy(NAME, { "lazy" })
+
+        expect:
+        registry.getAll(NAME).get(NAME) == "lazy"
+    }
+}
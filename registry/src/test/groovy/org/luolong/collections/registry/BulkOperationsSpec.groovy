@@ -0,0 +1,74 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+public class BulkOperationsSpec extends Specification {
+
+    def "putAll copies all the mappings from another registry"(Registry target, Registry source) {
+        def indexed = Keys.indexed(String.class)
+        target.put(Keys.of(Integer.class, "kept"), 0)
+        target.put(Keys.of(Integer.class, "replaced"), 0)
+        source.put(Keys.of(Integer.class, "replaced"), 1)
+        source.put(Keys.of(Long.class, "added"), 2L)
+        source.put(indexed, "indexed")
+
+        when:
+        target.putAll(source)
+
+        then:
+        target.size() == 4
+        target.get(Keys.of(Integer.class, "kept")) == 0
+        target.get(Keys.of(Integer.class, "replaced")) == 1
+        target.get(Keys.of(Long.class, "added")) == 2L
+        target.get(indexed) == "indexed"
+        target.keySet(Number.class).size() == 3
+        target.keySet(String.class) == [indexed] as Set
+
+        where:
+        [target, source] << pairs()
+    }
+
+    def "putAll copies into an empty registry of the same implementation"(Registry target, Registry source) {
+        (0..<100).each { source.put(Keys.of(Integer.class, "key-" + it), it) }
+        (0..<10).each { source.put(Keys.indexed(Integer.class), it) }
+
+        when:
+        target.putAll(source)
+
+        then:
+        target.size() == 110
+        target.keySet(Integer.class).size() == 110
+        source.entrySet().every { target.get(it.key) == it.value }
+
+        where:
+        target << RegistryImplementations.create()
+        source << RegistryImplementations.create()
+    }
+
+    def "putAll with a map type checks the values"(Registry registry) {
+        when:
+        registry.putAll([(Keys.of(Integer.class, "one")): 1, (Keys.of(Long.class, "two")): 2L])
+
+        then:
+        registry.size() == 2
+        registry.keySet(Number.class).size() == 2
+
+        when:
+        registry.putAll([(Keys.of(Integer.class, "three")): 3, (Keys.of(Integer.class, "four")): "four"])
+
+        then:
+        thrown(ClassCastException)
+        registry.get(Keys.of(Integer.class, "four")) == null
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    // Every combination of the implementations, with fresh instances for every pair
+    private static List<List<Registry>> pairs() {
+        def indices = 0..<RegistryImplementations.create().size()
+        [indices, indices].combinations().collect { int i, int j ->
+            [RegistryImplementations.create()[i], RegistryImplementations.create()[j]]
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+import java.util.function.LongSupplier
+
+import static org.luolong.collections.registry.CachingRegistry.RemovalCause.*
+
+public class CachingRegistrySpec extends Specification {
+
+    def time = 0L
+    def ticker = { time } as LongSupplier
+    def removals = []
+    def listener = new CachingRegistry.RemovalListener() {
+        @Override
+        def <T> void onRemoval(Registry.Key<T> key, T value, CachingRegistry.RemovalCause cause) {
+            removals << [key, value, cause]
+        }
+    }
+
+    def "entries exceeding the maximum size are evicted"() {
+        def registry = CachingRegistry.builder().maximumSize(10).removalListener(listener).build()
+
+        when:
+        (0..<15).each { registry.put(Keys.of(Integer.class, "key-" + it), it) }
+
+        then:
+        registry.size() == 10
+        removals.size() == 5
+        removals*.get(2) as Set == [SIZE] as Set
+        (0..<5).every { registry.get(Keys.of(Integer.class, "key-" + it)) == null }
+        (5..<15).every { registry.get(Keys.of(Integer.class, "key-" + it)) == it }
+    }
+
+    def "entries that are read again survive a burst of new entries"() {
+        def registry = CachingRegistry.builder().maximumSize(10).build()
+        def hot = Keys.of(String.class, "hot")
+        registry.put(hot, "hot")
+
+        when:
+        registry.get(hot)
+        (0..<100).each { registry.put(Keys.of(Integer.class, "key-" + it), it) }
+
+        then:
+        registry.size() == 10
+        registry.get(hot) == "hot"
+    }
+
+    def "entries are evicted by weight"() {
+        def registry = CachingRegistry.builder()
+                .maximumWeight(10, { key, value -> ((String) value).length() } as CachingRegistry.Weigher)
+                .build()
+
+        when:
+        registry.put(Keys.of(String.class, "one"), "12345")
+        registry.put(Keys.of(String.class, "two"), "12345")
+        registry.put(Keys.of(String.class, "three"), "123")
+
+        then:
+        registry.weight() <= 10
+        registry.get(Keys.of(String.class, "one")) == null
+        registry.get(Keys.of(String.class, "three")) == "123"
+    }
+
+    def "entries expire after the default time to live"() {
+        def registry = CachingRegistry.builder().expireAfterWrite(1, TimeUnit.SECONDS)
+                .ticker(ticker).removalListener(listener).build()
+        def key = Keys.of(String.class, "key")
+        registry.put(key, "value")
+
+        when:
+        time = TimeUnit.MILLISECONDS.toNanos(999)
+
+        then:
+        registry.get(key) == "value"
+
+        when:
+        time = TimeUnit.SECONDS.toNanos(1)
+
+        then:
+        registry.get(key) == null
+        registry.isEmpty()
+        removals == [[key, "value", EXPIRED]]
+    }
+
+    def "time to live can be given per entry"() {
+        def registry = CachingRegistry.builder().expireAfterWrite(1, TimeUnit.SECONDS).ticker(ticker).build()
+        def short_ = Keys.of(String.class, "short")
+        def forever = Keys.of(String.class, "forever")
+        registry.put(short_, "short", 10, TimeUnit.MILLISECONDS)
+        registry.put(forever, "forever", Long.MAX_VALUE, TimeUnit.NANOSECONDS)
+        registry.put(Keys.of(String.class, "default"), "default")
+
+        when:
+        time = TimeUnit.SECONDS.toNanos(10)
+        registry.cleanUp()
+
+        then:
+        registry.get(short_) == null
+        registry.get(forever) == "forever"
+        registry.size() == 1
+    }
+
+    def "removal listener is notified of replaced and removed entries"() {
+        def registry = CachingRegistry.builder().removalListener(listener).build()
+        def key = Keys.of(Integer.class, "key")
+
+        when:
+        registry.put(key, 1)
+        registry.put(key, 2)
+        registry.remove(key)
+
+        then:
+        removals == [[key, 1, REPLACED], [key, 2, EXPLICIT]]
+    }
+
+    def "concurrent reads and writes keep the size bounded"() {
+        def registry = CachingRegistry.builder().maximumSize(100).build()
+
+        when:
+        def threads = (0..<4).collect { t ->
+            Thread.start {
+                def random = new Random(t)
+                10000.times {
+                    def key = Keys.of(Integer.class, "key-" + random.nextInt(500))
+                    if (registry.get(key) == null) {
+                        registry.put(key, it)
+                    }
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        registry.size() <= 100
+        registry.weight() == registry.size()
+    }
+}
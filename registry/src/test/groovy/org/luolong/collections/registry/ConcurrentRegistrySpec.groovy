@@ -0,0 +1,202 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Function
+import java.util.function.Supplier
+
+public class ConcurrentRegistrySpec extends Specification {
+
+    def registry = new ConcurrentRegistry()
+    def key = Keys.of(String.class, "key")
+
+    def "null values are kept in the registry"() {
+        when:
+        registry.put(key, null)
+
+        then:
+        registry.size() == 1
+        registry.get(key) == null
+        registry.entrySet().first().getValue() == null
+    }
+
+    def "putIfAbsent does not overwrite an existing mapping"() {
+        expect:
+        registry.putIfAbsent(key, "first") == null
+        registry.putIfAbsent(key, "second") == "first"
+        registry.get(key) == "first"
+    }
+
+    def "key mapped to null counts as present"() {
+        registry.put(key, null)
+
+        expect:
+        registry.putIfAbsent(key, "value") == null
+        registry.get(key) == null
+    }
+
+    def "computeIfAbsent computes the value only when absent"() {
+        expect:
+        registry.computeIfAbsent(key, { k -> k.getName() } as Function) == "key"
+        registry.computeIfAbsent(key, { k -> "other" } as Function) == "key"
+    }
+
+    def "computeIfAbsent does not store null results"() {
+        expect:
+        registry.computeIfAbsent(key, { k -> null } as Function) == null
+        registry.isEmpty()
+    }
+
+    def "replace updates only present keys"() {
+        expect:
+        registry.replace(key, "value") == null
+        registry.isEmpty()
+
+        when:
+        registry.put(key, "old")
+
+        then:
+        registry.replace(key, "new") == "old"
+        !registry.replace(key, "old", "newer")
+        registry.replace(key, "new", "newer")
+        registry.get(key) == "newer"
+    }
+
+    def "computeIfAbsent invokes the mapping function once under contention"() {
+        def threads = 16
+        def invocations = new AtomicInteger()
+        def start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(threads)
+
+        when:
+        def results = (1..threads).collect {
+            executor.submit({
+                start.await()
+                registry.computeIfAbsent(key, { k -> "value-" + invocations.incrementAndGet() } as Function)
+            } as Callable)
+        }
+        start.countDown()
+        def values = results*.get() as Set
+
+        then:
+        invocations.get() == 1
+        values == ["value-1"] as Set
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "lazy value is created once on first access"() {
+        def invocations = new AtomicInteger()
+
+        when:
+        registry.putLazy(key, { "value-" + invocations.incrementAndGet() } as Supplier)
+
+        then:
+        invocations.get() == 0
+        registry.size() == 1
+        registry.keySet() == [key] as Set
+
+        and:
+        registry.get(key) == "value-1"
+        registry.get(key) == "value-1"
+        invocations.get() == 1
+    }
+
+    def "concurrent first readers share a single lazy value"() {
+        def threads = 16
+        def invocations = new AtomicInteger()
+        def start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(threads)
+        registry.putLazy(key, { Thread.sleep(10); "value-" + invocations.incrementAndGet() } as Supplier)
+
+        when:
+        def results = (1..threads).collect {
+            executor.submit({ start.await(); registry.get(key) } as Callable)
+        }
+        start.countDown()
+        def values = results*.get() as Set
+
+        then:
+        invocations.get() == 1
+        values == ["value-1"] as Set
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "failed lazy value is created again on next access"() {
+        def invocations = new AtomicInteger()
+        registry.putLazy(key, {
+            if (invocations.incrementAndGet() == 1) throw new IllegalStateException("first")
+            "value"
+        } as Supplier)
+
+        when:
+        registry.get(key)
+
+        then:
+        thrown(IllegalStateException)
+        registry.get(key) == "value"
+    }
+
+    def "removing a lazy value does not create it"() {
+        def invocations = new AtomicInteger()
+        registry.putLazy(key, { invocations.incrementAndGet(); "value" } as Supplier)
+
+        expect:
+        registry.remove(key) == null
+        invocations.get() == 0
+        registry.isEmpty()
+    }
+
+    def "iteration creates lazy values by default"() {
+        registry.putLazy(key, { "value" } as Supplier)
+
+        expect:
+        registry.values() as List == ["value"]
+        registry.entrySet(CharSequence.class)*.getValue() == ["value"]
+    }
+
+    def "iteration can skip lazy values that are not created yet"() {
+        def lazy = new ConcurrentRegistry(16, false)
+        def other = Keys.of(String.class, "other")
+        def invocations = new AtomicInteger()
+        lazy.putLazy(key, { invocations.incrementAndGet(); "value" } as Supplier)
+        lazy.putLazy(other, { "other" } as Supplier)
+        lazy.get(other)
+
+        expect:
+        lazy.values() as List == ["other"]
+        lazy.entrySet()*.getKey() == [other]
+        lazy.entrySet().size() == 1
+        lazy.values().size() == 1
+        lazy.keySet() == [key, other] as Set
+        lazy.size() == 2
+        invocations.get() == 0
+    }
+
+    def "entries are removed through the iterator after hasNext"() {
+        (0..<10).each { registry.put(Keys.of(Integer.class, "key-" + it), it) }
+
+        when:
+        def removed = []
+        def iterator = registry.entrySet().iterator()
+        while (iterator.hasNext()) {
+            def entry = iterator.next()
+            if (iterator.hasNext() && entry.value % 2 == 0) {
+                removed << entry.key
+                iterator.remove()
+            }
+        }
+
+        then:
+        !removed.isEmpty()
+        removed.every { registry.get(it) == null }
+        registry.size() == 10 - removed.size()
+    }
+}
@@ -0,0 +1,92 @@
+package org.luolong.collections.registry
+
+import org.luolong.collections.registry.Registry.Key
+import spock.lang.Specification
+
+import java.util.function.BiConsumer
+
+public class DefaultMethodsSpec extends Specification {
+
+    def registry = new MinimalRegistry()
+
+    def "batch operations fall back to get and put"() {
+        def one = Keys.of(Integer.class, "one")
+        def two = Keys.of(Integer.class, "two")
+
+        when:
+        registry.putAll([one, two] as Key[], [1, 2] as Object[])
+
+        then:
+        registry.getAll(one, two).get(two) == 2
+        registry.backing.size() == 2
+
+        when:
+        registry.putAll([one] as Key[], ["one"] as Object[])
+
+        then:
+        thrown(ClassCastException)
+    }
+
+    def "map is copied with put"() {
+        when:
+        registry.putAll([(Keys.of(String.class, "key")): "value"])
+
+        then:
+        registry.get(Keys.of(String.class, "key")) == "value"
+    }
+
+    def "visitors fall back to the entry sets"() {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(String.class, "string"), "string")
+        def visited = [:]
+        def numbers = []
+
+        when:
+        registry.forEach(new RegistryVisitor() {
+            @Override
+            def <T> void visit(Key<T> key, T value) {
+                visited[key] = value
+            }
+        })
+        registry.forEachOfType(Number.class, { key, value -> numbers << value } as BiConsumer)
+
+        then:
+        visited == [(Keys.of(Integer.class, "one")): 1, (Keys.of(String.class, "string")): "string"]
+        numbers == [1]
+    }
+}
+
+/**
+ * Registry implemented outside of this library, that implements only the abstract methods.
+ */
+class MinimalRegistry implements Registry {
+    final MapRegistry backing = new MapRegistry()
+
+    def <T> T get(Key<T> key) { backing.get(key) }
+
+    def <T> void put(Key<T> key, T value) { backing.put(key, value) }
+
+    def <T> void putAll(Registry r) { r.entrySet().each { backing.put(it.key, it.value) } }
+
+    def <T> T remove(Key<T> key) { backing.remove(key) }
+
+    def <T> Set<Registry.Entry<? extends T>> removeAll(Class<T> type) { backing.removeAll(type) }
+
+    boolean isEmpty() { backing.isEmpty() }
+
+    int size() { backing.size() }
+
+    Set<Registry.Entry<?>> entrySet() { backing.entrySet() }
+
+    Set<Key<?>> keySet() { backing.keySet() }
+
+    Collection<?> values() { backing.values() }
+
+    def <T> Set<Registry.Entry<? extends T>> entrySet(Class<T> type) { backing.entrySet(type) }
+
+    def <T> Set<Key<? extends T>> keySet(Class<T> type) { backing.keySet(type) }
+
+    def <T> Collection<? extends T> values(Class<T> type) { backing.values(type) }
+
+    void clear() { backing.clear() }
+}
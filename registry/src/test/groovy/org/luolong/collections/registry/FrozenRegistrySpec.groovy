@@ -0,0 +1,89 @@
+package org.luolong.collections.registry
+
+import org.openjdk.jol.info.GraphLayout
+import spock.lang.Specification
+
+public class FrozenRegistrySpec extends Specification {
+
+    def source = new MapRegistry()
+
+    def setup() {
+        (0..<1000).each { source.put(Keys.of(Integer.class, "key-" + it), it) }
+        source.put(Keys.of(String.class), null)
+    }
+
+    def "copy contains all the mappings of the source"() {
+        when:
+        def frozen = Registry.copyOf(source)
+
+        then:
+        frozen.size() == source.size()
+        (0..<1000).every { frozen.get(Keys.of(Integer.class, "key-" + it)) == it }
+        frozen.keySet() == source.keySet(Object.class)
+        frozen.keySet(String.class) == [Keys.of(String.class)] as Set
+        frozen.get(Keys.of(Integer.class, "missing")) == null
+    }
+
+    def "copy is not affected by changes to the source"() {
+        def frozen = Registry.copyOf(source)
+
+        when:
+        source.put(Keys.of(Integer.class, "key-1"), -1)
+        source.clear()
+
+        then:
+        frozen.get(Keys.of(Integer.class, "key-1")) == 1
+    }
+
+    def "mutators are not supported"() {
+        def frozen = Registry.copyOf(source)
+
+        when:
+        operation(frozen)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        where:
+        operation << [
+                { it.put(Keys.of(String.class), "value") },
+                { it.remove(Keys.of(String.class)) },
+                { it.putAll(new MapRegistry()) },
+                { it.removeAll(Integer.class) },
+                { it.clear() },
+                { it.entrySet().iterator().with { next(); remove() } },
+                { it.entrySet().iterator().next().setValue(0) },
+        ]
+    }
+
+    def "copy is sized by the entries of the source rather than its size"() {
+        def changing = Spy(MapRegistry)
+        (0..<100).each { changing.put(Keys.of(Integer.class, "key-" + it), it) }
+        changing.size() >> 1
+
+        when:
+        def copy = Registry.copyOf(changing)
+
+        then:
+        copy.size() == 100
+        (0..<100).every { copy.get(Keys.of(Integer.class, "key-" + it)) == it }
+    }
+
+    def "empty registry is copied"() {
+        expect:
+        Registry.copyOf(new MapRegistry()).isEmpty()
+        Registry.copyOf(new MapRegistry()).get(Keys.of(String.class)) == null
+    }
+
+    def "frozen registry is smaller than the map registry it was copied from"() {
+        def keysAndValues = GraphLayout.parseInstance(source.keySet(Object.class).toArray(), source.values(Object.class).toArray())
+
+        when:
+        def frozen = Registry.copyOf(source)
+        def mapFootprint = GraphLayout.parseInstance(source).totalSize() - keysAndValues.totalSize()
+        def frozenFootprint = GraphLayout.parseInstance(frozen).totalSize() - keysAndValues.totalSize()
+
+        then:
+        frozenFootprint < mapFootprint / 2
+    }
+}
@@ -0,0 +1,126 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import javax.management.ObjectName
+import javax.management.openmbean.CompositeData
+import javax.management.openmbean.TabularData
+import java.lang.management.ManagementFactory
+
+public class InstrumentedRegistrySpec extends Specification {
+
+    def registry = new InstrumentedRegistry(new MapRegistry())
+
+    def "hits, misses, puts and removals are counted per key type"() {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(String.class, "string"), "string")
+
+        when:
+        3.times { registry.get(Keys.of(Integer.class, "one")) }
+        registry.get(Keys.of(Integer.class, "missing"))
+        registry.remove(Keys.of(String.class, "string"))
+        def snapshot = registry.snapshot()
+
+        then:
+        snapshot.size == 1
+        snapshot.hitCount == 3
+        snapshot.missCount == 1
+        snapshot.hitRatio == 0.75d
+        with(snapshot.types[Integer.class]) {
+            hitCount == 3
+            missCount == 1
+            putCount == 1
+            removeCount == 0
+            latencyCount == 4
+        }
+        with(snapshot.types[String.class]) {
+            putCount == 1
+            removeCount == 1
+            hitRatio.naN
+        }
+    }
+
+    def "latencies are recorded in buckets accurate to a quarter"() {
+        expect:
+        InstrumentedRegistry.lowerBound(InstrumentedRegistry.bucket(nanos)) == lowerBound
+
+        where:
+        nanos   | lowerBound
+        0       | 0
+        3       | 3
+        7       | 7
+        9       | 8
+        15      | 14
+        1000    | 896
+        1023    | 896
+        1024    | 1024
+        1279    | 1024
+        1280    | 1280
+    }
+
+    def "sampling times only some of the lookups but counts all of them"() {
+        def sampled = new InstrumentedRegistry(new MapRegistry(), 100)
+        sampled.put(Keys.of(Integer.class, "one"), 1)
+
+        when:
+        10000.times { sampled.get(Keys.of(Integer.class, "one")) }
+        def metrics = sampled.snapshot().types[Integer.class]
+
+        then:
+        metrics.hitCount == 10000
+        metrics.latencyCount > 0
+        metrics.latencyCount < 1000
+    }
+
+    def "percentiles are computed from the latency histogram"() {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+
+        when:
+        1000.times { registry.get(Keys.of(Integer.class, "one")) }
+        def metrics = registry.snapshot().types[Integer.class]
+
+        then:
+        metrics.latencyMedian <= metrics.latency99thPercentile
+        metrics.latency99thPercentile <= metrics.latency999thPercentile
+        metrics.getLatencyPercentile(100) >= metrics.latency999thPercentile
+    }
+
+    def "metrics are available through JMX"() {
+        def server = ManagementFactory.getPlatformMBeanServer()
+        def name = new ObjectName("org.luolong.collections.registry:type=Registry,name=test")
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.get(Keys.of(Integer.class, "one"))
+
+        when:
+        server.registerMBean(registry.mxBean(), name)
+
+        then:
+        server.getAttribute(name, "Size") == 1
+        server.getAttribute(name, "HitCount") == 1L
+        def types = (TabularData) server.getAttribute(name, "Types")
+        def integers = (CompositeData) types.get([Integer.class.name] as Object[]).get("value")
+        integers.get("hitCount") == 1L
+        integers.get("putCount") == 1L
+
+        cleanup:
+        server.unregisterMBean(name)
+    }
+
+    def "views are forwarded to the decorated registry"() {
+        def backing = Spy(MapRegistry)
+        def decorated = new InstrumentedRegistry(backing)
+        decorated.put(Keys.of(Integer.class, "one"), 1)
+        decorated.put(Keys.of(String.class, "string"), "string")
+
+        when:
+        def keys = decorated.keySet(Number.class)
+        def values = decorated.values(Number.class)
+
+        then:
+        1 * backing.keySet(Number.class)
+        1 * backing.values(Number.class)
+        0 * backing.entrySet()
+        keys == [Keys.of(Integer.class, "one")] as Set
+        values as List == [1]
+    }
+}
@@ -0,0 +1,92 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import java.util.function.BiConsumer
+
+public class IterationSpec extends Specification {
+
+    def "forEach visits every entry"(Registry registry) {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.indexed(String.class), "indexed")
+        registry.put(Keys.of(Long.class, "null"), null)
+        def visited = [:]
+
+        when:
+        registry.forEach(new RegistryVisitor() {
+            @Override
+            def <T> void visit(Registry.Key<T> key, T value) {
+                visited[key] = value
+            }
+        })
+
+        then:
+        visited.size() == 3
+        visited[Keys.of(Integer.class, "one")] == 1
+        visited.containsKey(Keys.of(Long.class, "null"))
+        visited.values().contains("indexed")
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "forEachOfType visits the entries of the type and its subtypes"(Registry registry) {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(Long.class, "two"), 2L)
+        registry.put(Keys.of(String.class, "string"), "string")
+        def visited = [:]
+
+        when:
+        registry.forEachOfType(Number.class, { key, value -> visited[key] = value } as BiConsumer)
+
+        then:
+        visited == [(Keys.of(Integer.class, "one")): 1, (Keys.of(Long.class, "two")): 2L]
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "removing through the key set iterator removes the entry from the registry"(Registry registry) {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(String.class, "string"), "string")
+
+        when:
+        def iterator = registry.keySet().iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next().type == Integer.class) {
+                iterator.remove()
+            }
+        }
+
+        then:
+        registry.keySet() == [Keys.of(String.class, "string")] as Set
+        registry.keySet(Number.class).isEmpty()
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "entries stay valid after the iteration moves on"(Registry registry) {
+        (1..3).each { registry.put(Keys.of(Integer.class, "key-" + it), it) }
+
+        expect:
+        new HashSet<>(registry.entrySet()).size() == 3
+        registry.entrySet().collect { it }*.getValue().sort() == [1, 2, 3]
+        registry.entrySet(Number.class).collect { it }*.getValue().sort() == [1, 2, 3]
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "toArray returns detached entries"(Registry registry) {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(Integer.class, "two"), 2)
+
+        expect:
+        registry.entrySet().toArray().collect { it.value } as Set == [1, 2] as Set
+        registry.entrySet(Integer.class).toArray().collect { it.value } as Set == [1, 2] as Set
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+}
@@ -0,0 +1,38 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+public class KeysSpec extends Specification {
+
+    def "named keys are equal by type and name"() {
+        expect:
+        Keys.of(String.class, "name") == Keys.of(String.class, "name")
+        Keys.of(String.class, "name").hashCode() == Keys.of(String.class, "name").hashCode()
+        Keys.of(String.class, "name") != Keys.of(String.class, "other")
+        Keys.of(String.class, "name") != Keys.of(Integer.class, "name")
+        Keys.of(String.class, null) == Keys.of(String.class, null)
+    }
+
+    def "type keys are shared per type"() {
+        expect:
+        Keys.of(String.class).is(Keys.of(String.class))
+        Keys.of(String.class) == new TypeKey(String.class)
+        Keys.of(String.class) != Keys.of(Integer.class)
+    }
+
+    def "interned named keys are canonical"() {
+        expect:
+        Keys.intern(String.class, "name").is(Keys.intern(String.class, "name"))
+        Keys.intern(String.class, "name") == Keys.of(String.class, "name")
+        !Keys.intern(String.class, "name").is(Keys.intern(Integer.class, "name"))
+    }
+
+    def "identity keys are equal only to themselves"() {
+        def key = Keys.identity(String.class)
+
+        expect:
+        key == key
+        key != Keys.identity(String.class)
+        key.hashCode() == System.identityHashCode(key)
+    }
+}
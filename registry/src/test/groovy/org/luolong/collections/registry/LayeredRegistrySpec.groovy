@@ -0,0 +1,204 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+public class LayeredRegistrySpec extends Specification {
+
+    def root = new LayeredRegistry()
+    def one = Keys.of(Integer.class, "one")
+    def two = Keys.of(Integer.class, "two")
+    def three = Keys.of(Integer.class, "three")
+
+    def setup() {
+        root.put(one, 1)
+        root.put(two, 2)
+    }
+
+    def "child falls back to the parent chain"() {
+        def child = root.child().child()
+
+        expect:
+        child.get(one) == 1
+        child.size() == 2
+        child.keySet() == [one, two] as Set
+    }
+
+    def "child overrides do not modify the parent"() {
+        def child = root.child()
+
+        when:
+        child.put(one, -1)
+        child.put(three, 3)
+        child.remove(two)
+
+        then:
+        child.get(one) == -1
+        child.get(two) == null
+        child.get(three) == 3
+        child.size() == 2
+        child.entrySet().collectEntries { [it.key, it.value] } == [(one): -1, (three): 3]
+
+        root.get(one) == 1
+        root.get(two) == 2
+        root.get(three) == null
+        root.size() == 2
+    }
+
+    def "lookups through children do not write to a shared parent"() {
+        def middle = root.child()
+        middle.put(three, 3)
+        def children = [middle.child(), middle.child()]
+
+        when:
+        children.each { it.get(one); it.get(three); it.size() }
+
+        then:
+        children.every { it.get(two) == 2 && it.size() == 3 }
+        middle.@cache == null
+        middle.@sizeModCount == -1
+    }
+
+    def "null keys are rejected"() {
+        when:
+        root.child().put(null, 1)
+
+        then:
+        thrown(NullPointerException)
+    }
+
+    def "child sees modifications of the parent"() {
+        def child = root.child()
+        child.get(one)
+        child.get(three)
+
+        when:
+        root.put(one, 11)
+        root.put(three, 3)
+
+        then:
+        child.get(one) == 11
+        child.get(three) == 3
+        child.size() == 3
+    }
+
+    def "grandchild sees modifications of the root after caching its values"() {
+        def child = root.child().child()
+        child.get(one)
+        child.get(three)
+        child.size()
+
+        when:
+        root.put(one, 11)
+        root.put(three, 3)
+
+        then:
+        child.get(one) == 11
+        child.get(three) == 3
+        child.size() == 3
+    }
+
+    def "removing an absent key does not grow the child"() {
+        def child = root.child()
+
+        when:
+        (0..<100).each { child.remove(Keys.of(Integer.class, "absent-" + it)) }
+
+        then:
+        child.@local.isEmpty()
+        child.size() == 2
+    }
+
+    def "removing a key of the child only drops its local entry"() {
+        def child = root.child()
+        child.put(three, 3)
+
+        when:
+        child.remove(three)
+
+        then:
+        child.@local.isEmpty()
+        child.get(three) == null
+        child.size() == 2
+    }
+
+    def "root entries are removed through the iterator after hasNext"() {
+        (0..<10).each { root.put(Keys.of(Integer.class, "key-" + it), it) }
+
+        when:
+        def removed = []
+        def iterator = root.entrySet().iterator()
+        while (iterator.hasNext()) {
+            def entry = iterator.next()
+            if (iterator.hasNext() && entry.value % 2 == 0) {
+                removed << entry.key
+                iterator.remove()
+            }
+        }
+
+        then:
+        !removed.isEmpty()
+        removed.every { root.get(it) == null }
+        root.size() == 12 - removed.size()
+        root.keySet().size() == 12 - removed.size()
+    }
+
+    def "removed keys stay removed in the child"() {
+        def child = root.child()
+
+        when:
+        child.remove(one)
+        root.put(one, 11)
+
+        then:
+        child.get(one) == null
+        child.size() == 1
+    }
+
+    def "clear masks the parent entries"() {
+        def child = root.child()
+        child.put(three, 3)
+
+        when:
+        child.clear()
+
+        then:
+        child.isEmpty()
+        child.keySet().isEmpty()
+        root.size() == 2
+    }
+
+    def "iterator removes and entries write to the child"() {
+        def child = root.child()
+        child.put(three, 3)
+
+        when:
+        def iterator = child.entrySet().iterator()
+        while (iterator.hasNext()) {
+            def entry = iterator.next()
+            if (entry.key == one) {
+                entry.setValue(-1)
+            } else if (entry.key == two) {
+                iterator.remove()
+            }
+        }
+
+        then:
+        child.get(one) == -1
+        child.get(two) == null
+        child.size() == 2
+        root.get(one) == 1
+        root.get(two) == 2
+    }
+
+    def "null values override the parent"() {
+        def child = root.child()
+
+        when:
+        child.put(one, null)
+
+        then:
+        child.get(one) == null
+        child.size() == 2
+        child.keySet().contains(one)
+    }
+}
@@ -0,0 +1,114 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+public class MappedRegistrySpec extends Specification {
+
+    Path file = Files.createTempFile("registry", ".snapshot")
+    def codecs = ValueCodecs.defaults()
+
+    def cleanup() {
+        Files.deleteIfExists(file)
+    }
+
+    def "snapshot is restored with all the entries"() {
+        def source = new MapRegistry()
+        (0..<1000).each { source.put(Keys.of(Integer.class, "key-" + it), it) }
+        source.put(Keys.of(String.class), "type key")
+        source.put(Keys.of(String.class, null), "null name")
+        source.put(Keys.of(Long.class, "null value"), null)
+        source.put(Keys.of(byte[].class, "bytes"), [1, 2, 3] as byte[])
+
+        when:
+        MappedRegistry.write(source, file, codecs)
+        def restored = MappedRegistry.open(file, codecs)
+
+        then:
+        restored.size() == source.size()
+        (0..<1000).every { restored.get(Keys.of(Integer.class, "key-" + it)) == it }
+        restored.get(Keys.of(String.class)) == "type key"
+        restored.get(Keys.of(String.class, null)) == "null name"
+        restored.get(Keys.of(Long.class, "null value")) == null
+        restored.get(Keys.of(byte[].class, "bytes")) == [1, 2, 3] as byte[]
+        restored.get(Keys.of(Integer.class, "missing")) == null
+        restored.get(Keys.of(Integer.class)) == null
+
+        and:
+        restored.keySet() == source.keySet(Object.class)
+        restored.values(Integer.class).size() == 1000
+    }
+
+    def "values are decoded only when accessed"() {
+        def decoded = []
+        def codec = new ValueCodec<String>() {
+            Class<String> getType() { String.class }
+
+            void write(String value, DataOutput out) { out.writeUTF(value) }
+
+            String read(DataInput input) {
+                def value = input.readUTF()
+                decoded << value
+                value
+            }
+        }
+        codecs.register(codec)
+        def source = new MapRegistry()
+        (0..<100).each { source.put(Keys.of(String.class, "key-" + it), "value-" + it) }
+        MappedRegistry.write(source, file, codecs)
+
+        when:
+        def restored = MappedRegistry.open(file, codecs)
+        restored.get(Keys.of(String.class, "key-42"))
+        restored.get(Keys.of(String.class, "key-42"))
+
+        then:
+        decoded == ["value-42"]
+    }
+
+    def "keys other than type and named keys can not be written"() {
+        def source = new MapRegistry()
+        source.put(Keys.identity(String.class), "value")
+
+        when:
+        MappedRegistry.write(source, file, codecs)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "values without a codec can not be written"() {
+        def source = new MapRegistry()
+        source.put(Keys.of(Thread.class), Thread.currentThread())
+
+        when:
+        MappedRegistry.write(source, file, codecs)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "restored registry is read-only"() {
+        MappedRegistry.write(new MapRegistry(), file, codecs)
+        def restored = MappedRegistry.open(file, codecs)
+
+        when:
+        restored.put(Keys.of(String.class), "value")
+
+        then:
+        thrown(UnsupportedOperationException)
+        restored.isEmpty()
+    }
+
+    def "other files are rejected"() {
+        Files.write(file, "not a snapshot".bytes)
+
+        when:
+        MappedRegistry.open(file, codecs)
+
+        then:
+        thrown(IOException)
+    }
+}
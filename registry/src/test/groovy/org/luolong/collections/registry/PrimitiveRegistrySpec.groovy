@@ -0,0 +1,120 @@
+package org.luolong.collections.registry
+
+import org.openjdk.jol.info.GraphLayout
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+public class PrimitiveRegistrySpec extends Specification {
+
+    def registry = new PrimitiveRegistry()
+
+    def "primitive values are read and written without boxing"() {
+        def longKey = Keys.of(Long.class, "long")
+        def intKey = Keys.of(Integer.class, "int")
+        def doubleKey = Keys.of(Double.class, "double")
+
+        when:
+        registry.putLong(longKey, Long.MAX_VALUE)
+        registry.putInt(intKey, -1)
+        registry.putDouble(doubleKey, Math.PI)
+
+        then:
+        registry.getLong(longKey) == Long.MAX_VALUE
+        registry.getInt(intKey) == -1
+        registry.getDouble(doubleKey) == Math.PI
+        registry.get(longKey) == Long.MAX_VALUE
+        registry.get(intKey) == -1
+        registry.get(doubleKey) == Math.PI
+    }
+
+    def "values put generically are read by the primitive accessors"() {
+        def key = Keys.of(Long.class, "long")
+
+        when:
+        registry.put(key, 42L)
+
+        then:
+        registry.getLong(key) == 42L
+        registry.getLong(Keys.of(Long.class, "missing"), -1L) == -1L
+    }
+
+    def "primitive accessors of missing or null values fail"() {
+        def key = Keys.of(Integer.class, "null")
+        registry.put(key, null)
+
+        when:
+        registry.getInt(key)
+
+        then:
+        thrown(NullPointerException)
+        registry.keySet().contains(key)
+        registry.getInt(key, 7) == 7
+    }
+
+    def "byte arrays are stored by value"() {
+        def key = Keys.of(byte[].class, "bytes")
+        byte[] value = [1, 2, 3]
+
+        when:
+        registry.put(key, value)
+        value[0] = 9
+
+        then:
+        registry.get(key) == [1, 2, 3] as byte[]
+        registry.getBytesLength(key) == 3
+
+        when:
+        def target = ByteBuffer.allocate(8)
+
+        then:
+        registry.getBytes(key, target) == 3
+        target.flip() == ByteBuffer.wrap([1, 2, 3] as byte[])
+    }
+
+    def "byte array storage is reused after values are replaced"() {
+        def key = Keys.of(byte[].class, "bytes")
+
+        when:
+        10000.times { registry.put(key, new byte[1000 + it % 7]) }
+        registry.put(Keys.of(byte[].class, "other"), [5] as byte[])
+
+        then:
+        registry.getBytesLength(key) == 1000 + 9999 % 7
+        registry.get(Keys.of(byte[].class, "other")) == [5] as byte[]
+    }
+
+    def "entries can be removed while iterating"() {
+        (0..<1000).each { registry.putLong(Keys.of(Long.class, "key-" + it), it) }
+
+        when:
+        def iterator = registry.entrySet().iterator()
+        def seen = 0
+        while (iterator.hasNext()) {
+            def entry = iterator.next()
+            seen++
+            if (entry.value % 2 == 0) {
+                iterator.remove()
+            }
+        }
+
+        then:
+        seen == 1000
+        registry.size() == 500
+        (0..<1000).every { registry.get(Keys.of(Long.class, "key-" + it)) == (it % 2 == 0 ? null : it) }
+    }
+
+    def "primitive registry is smaller than the map registry"() {
+        def map = new MapRegistry()
+        def keys = (0..<10000).collect { Keys.indexed(Long.class) }
+        keys.eachWithIndex { key, i ->
+            registry.putLong(key, i * 1000L)
+            map.put(key, i * 1000L)
+        }
+        def keyFootprint = GraphLayout.parseInstance(keys.toArray()).totalSize()
+
+        expect:
+        GraphLayout.parseInstance(registry).totalSize() - keyFootprint <
+                (GraphLayout.parseInstance(map).totalSize() - keyFootprint) / 2
+    }
+}
@@ -5,7 +5,9 @@ import spock.lang.Specification
 
 public class RegistryImplementations{
     public static List<Registry> create() {
-        return [new MapRegistry()]
+        return [new MapRegistry(), new ArrayRegistry(), new ConcurrentRegistry(),
+                new LayeredRegistry(), new LayeredRegistry().child(), CachingRegistry.builder().build(),
+                new PrimitiveRegistry(), new ShardedRegistry()]
     }
 }
 
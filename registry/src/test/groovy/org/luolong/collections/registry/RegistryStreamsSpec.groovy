@@ -0,0 +1,131 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import java.io.StreamCorruptedException
+import java.nio.channels.Channels
+
+public class RegistryStreamsSpec extends Specification {
+
+    def codecs = ValueCodecs.defaults()
+
+    def "registry is read back with all the entries"() {
+        def source = new MapRegistry()
+        (0..<1000).each { source.put(Keys.of(Integer.class, "key-" + it), it) }
+        source.put(Keys.of(String.class), "type key")
+        source.put(Keys.of(String.class, null), "null name")
+        source.put(Keys.of(Long.class, "null value"), null)
+        source.put(Keys.of(byte[].class, "bytes"), [1, 2, 3] as byte[])
+        def bytes = new ByteArrayOutputStream()
+        def restored = new MapRegistry()
+
+        when:
+        RegistryStreams.writeTo(source, bytes, codecs)
+        def count = RegistryStreams.readFrom(new ByteArrayInputStream(bytes.toByteArray()), codecs, restored)
+
+        then:
+        count == source.size()
+        restored.keySet() == source.keySet()
+        (0..<1000).every { restored.get(Keys.of(Integer.class, "key-" + it)) == it }
+        restored.get(Keys.of(String.class)) == "type key"
+        restored.get(Keys.of(String.class, null)) == "null name"
+        restored.get(Keys.of(Long.class, "null value")) == null
+        restored.get(Keys.of(byte[].class, "bytes")) == [1, 2, 3] as byte[]
+    }
+
+    def "type names are written once"() {
+        def source = new MapRegistry()
+        (0..<1000).each { source.put(Keys.of(Integer.class, "key-" + it), it) }
+        def bytes = new ByteArrayOutputStream()
+
+        when:
+        RegistryStreams.writeTo(source, bytes, codecs)
+
+        then:
+        new String(bytes.toByteArray(), "ISO-8859-1").count(Integer.class.getName()) == 1
+    }
+
+    def "names beyond the string table are written in place"() {
+        def source = new MapRegistry()
+        (0..<10000).each { source.put(Keys.of(Integer.class, "key-" + it), it) }
+        def bytes = new ByteArrayOutputStream()
+        def restored = new MapRegistry()
+
+        when:
+        RegistryStreams.writeTo(source, bytes, codecs)
+        RegistryStreams.readFrom(new ByteArrayInputStream(bytes.toByteArray()), codecs, restored)
+
+        then:
+        restored.size() == 10000
+        (0..<10000).every { restored.get(Keys.of(Integer.class, "key-" + it)) == it }
+    }
+
+    def "reading by type skips the other entries without decoding them"() {
+        def decoded = []
+        codecs.register(new ValueCodec<String>() {
+            Class<String> getType() { String.class }
+
+            void write(String value, DataOutput out) { out.writeUTF(value) }
+
+            String read(DataInput input) {
+                def value = input.readUTF()
+                decoded << value
+                value
+            }
+        })
+        def source = new MapRegistry()
+        (0..<100).each {
+            source.put(Keys.of(String.class, "string-" + it), "value-" + it)
+            source.put(Keys.of(Integer.class, "integer-" + it), it)
+        }
+        def bytes = new ByteArrayOutputStream()
+        def restored = new MapRegistry()
+
+        when:
+        def count = RegistryStreams.readFrom(encode(source, bytes), codecs, restored, Number.class)
+
+        then:
+        count == 100
+        restored.size() == 100
+        restored.keySet(Integer.class).size() == 100
+        decoded.isEmpty()
+    }
+
+    def "channels are written and read"() {
+        def source = new MapRegistry()
+        source.put(Keys.of(String.class, "key"), "value")
+        def bytes = new ByteArrayOutputStream()
+        def restored = new MapRegistry()
+
+        when:
+        RegistryStreams.writeTo(source, Channels.newChannel(bytes), codecs)
+        RegistryStreams.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), codecs, restored)
+
+        then:
+        restored.get(Keys.of(String.class, "key")) == "value"
+    }
+
+    def "keys other than type and named keys can not be written"() {
+        def source = new MapRegistry()
+        source.put(Keys.identity(String.class), "value")
+
+        when:
+        RegistryStreams.writeTo(source, new ByteArrayOutputStream(), codecs)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "other streams are rejected"() {
+        when:
+        RegistryStreams.readFrom(new ByteArrayInputStream("not a registry".getBytes("UTF-8")), codecs, new MapRegistry())
+
+        then:
+        thrown(StreamCorruptedException)
+    }
+
+    private ByteArrayInputStream encode(Registry registry, ByteArrayOutputStream bytes) {
+        RegistryStreams.writeTo(registry, bytes, ValueCodecs.defaults())
+        new ByteArrayInputStream(bytes.toByteArray())
+    }
+}
@@ -0,0 +1,145 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
+import static org.luolong.collections.registry.ShardedRegistry.Partitioning.KEY_HASH
+import static org.luolong.collections.registry.ShardedRegistry.Partitioning.KEY_TYPE
+
+public class ShardedRegistrySpec extends Specification {
+
+    def "number of shards is rounded up to a power of two"() {
+        expect:
+        new ShardedRegistry(shards, KEY_HASH).getShardCount() == expected
+
+        where:
+        shards  | expected
+        1       | 1
+        3       | 4
+        16      | 16
+        100000  | 65536
+    }
+
+    def "default number of shards depends on the available processors"() {
+        def processors = Runtime.getRuntime().availableProcessors()
+
+        expect:
+        new ShardedRegistry().getShardCount() >= processors
+        Integer.bitCount(new ShardedRegistry().getShardCount()) == 1
+    }
+
+    def "number of shards must be positive"() {
+        when:
+        new ShardedRegistry(0, KEY_HASH)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "keys are spread across the shards by hash"() {
+        def registry = new ShardedRegistry(8, KEY_HASH)
+
+        when:
+        (0..<1000).each { registry.put(Keys.of(Integer.class, "key-" + it), it) }
+
+        then:
+        registry.size() == 1000
+        registry.getShardStats()*.size.sum() == 1000
+        registry.getShardStats().every { it.size > 0 && it.writes == it.size }
+    }
+
+    def "keys of a type share a shard when partitioned by type"() {
+        def registry = new ShardedRegistry(8, KEY_TYPE)
+
+        when:
+        (0..<100).each { registry.put(Keys.of(Integer.class, "key-" + it), it) }
+
+        then:
+        registry.getShardStats().count { it.size > 0 } == 1
+        registry.size() == 100
+    }
+
+    def "removing an absent key is not counted as a write"() {
+        def registry = new ShardedRegistry(4, KEY_HASH)
+        def key = Keys.of(String.class, "key")
+        registry.put(key, null)
+
+        when:
+        registry.remove(Keys.of(String.class, "absent"))
+        registry.remove(key)
+        registry.remove(key)
+
+        then:
+        registry.isEmpty()
+        registry.getShardStats()*.writes.sum() == 2
+    }
+
+    def "exact size and snapshot see all the entries"() {
+        def registry = new ShardedRegistry(4, KEY_HASH)
+        def key = Keys.of(String.class, "key")
+        registry.put(key, "value")
+        registry.put(Keys.of(String.class, "other"), null)
+
+        when:
+        def snapshot = registry.snapshot()
+        registry.remove(key)
+
+        then:
+        snapshot.size() == 2
+        snapshot.get(key) == "value"
+        registry.exactSize() == 1
+    }
+
+    def "entries write through to the registry"() {
+        def registry = new ShardedRegistry(4, KEY_HASH)
+        def key = Keys.of(String.class, "key")
+        registry.put(key, "old")
+        registry.put(Keys.of(String.class, "other"), "other")
+
+        when:
+        registry.entrySet().find { it.key == key }.setValue("new")
+
+        then:
+        registry.get(key) == "new"
+
+        when:
+        def iterator = registry.entrySet().iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next().key == key) {
+                iterator.remove()
+            }
+        }
+
+        then:
+        registry.get(key) == null
+        registry.size() == 1
+    }
+
+    def "concurrent writers do not lose updates"() {
+        def registry = new ShardedRegistry(4, KEY_HASH)
+        def threads = 8
+        def start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(threads)
+
+        when:
+        def results = (0..<threads).collect { thread ->
+            executor.submit({
+                start.await()
+                (0..<1000).each { registry.put(Keys.of(Integer.class, "key-" + thread + "-" + it), it) }
+            } as Callable)
+        }
+        start.countDown()
+        results*.get()
+
+        then:
+        registry.size() == threads * 1000
+        registry.exactSize() == threads * 1000
+        registry.getShardStats()*.writes.sum() == threads * 1000
+
+        cleanup:
+        executor.shutdown()
+    }
+}
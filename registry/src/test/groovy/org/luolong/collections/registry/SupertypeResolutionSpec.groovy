@@ -0,0 +1,170 @@
+package org.luolong.collections.registry
+
+import org.luolong.collections.registry.Registry.Key
+import spock.lang.Specification
+
+public class SupertypeResolutionSpec extends Specification {
+
+    def registry = MapRegistry.withSupertypeResolution()
+
+    def "type key resolves to the single registered key of a subtype"() {
+        def list = new ArrayList<String>()
+        registry.put(Keys.of(ArrayList.class), list)
+
+        expect:
+        registry.get(Keys.of(List.class)).is(list)
+        registry.get(Keys.of(RandomAccess.class)).is(list)
+        registry.resolve(Collection.class) == Keys.of(ArrayList.class)
+    }
+
+    def "exact key takes precedence over subtypes"() {
+        registry.put(Keys.of(CharSequence.class), "exact")
+        registry.put(Keys.of(String.class), "string")
+        registry.put(Keys.of(StringBuilder.class), new StringBuilder("builder"))
+
+        expect:
+        registry.get(Keys.of(CharSequence.class)) == "exact"
+        registry.resolve(CharSequence.class) == Keys.of(CharSequence.class)
+    }
+
+    def "exact key mapped to null is not resolved further"() {
+        registry.put(Keys.of(CharSequence.class), null)
+        registry.put(Keys.of(String.class), "string")
+
+        expect:
+        registry.get(Keys.of(CharSequence.class)) == null
+    }
+
+    def "only type keys take part in the resolution"() {
+        registry.put(Keys.of(String.class, "named"), "named")
+
+        expect:
+        registry.get(Keys.of(CharSequence.class)) == null
+        registry.resolve(CharSequence.class) == null
+    }
+
+    def "ambiguous resolution reports the candidates ordered by type name"() {
+        registry.put(Keys.of(StringBuilder.class), new StringBuilder())
+        registry.put(Keys.of(String.class), "string")
+        registry.put(Keys.of(StringBuffer.class), new StringBuffer())
+
+        when:
+        registry.get(Keys.of(CharSequence.class))
+
+        then:
+        def e = thrown(AmbiguousKeyException)
+        e.key == Keys.of(CharSequence.class)
+        e.candidates == [Keys.of(String.class), Keys.of(StringBuffer.class), Keys.of(StringBuilder.class)]
+    }
+
+    def "cached resolution follows puts and removes"() {
+        expect:
+        registry.get(Keys.of(Number.class)) == null
+
+        when:
+        registry.put(Keys.of(Integer.class), 1)
+
+        then:
+        registry.get(Keys.of(Number.class)) == 1
+
+        when:
+        registry.put(Keys.of(Long.class), 2L)
+        registry.get(Keys.of(Number.class))
+
+        then:
+        thrown(AmbiguousKeyException)
+
+        when:
+        registry.remove(Keys.of(Integer.class))
+
+        then:
+        registry.get(Keys.of(Number.class)) == 2L
+        registry.get(Keys.of(Comparable.class)) == 2L
+
+        when:
+        registry.removeAll(Long.class)
+
+        then:
+        registry.get(Keys.of(Number.class)) == null
+    }
+
+    def "resolved values follow the writes of the resolved key"() {
+        def key = Keys.of(Integer.class)
+        registry.put(key, 1)
+        registry.get(Keys.of(Number.class))
+
+        when:
+        registry.put(key, 2)
+
+        then:
+        registry.get(Keys.of(Number.class)) == 2
+
+        when:
+        registry.entrySet().first().setValue(3)
+
+        then:
+        registry.get(Keys.of(Number.class)) == 3
+
+        when:
+        registry.entrySet(Integer.class).first().setValue(4)
+
+        then:
+        registry.get(Keys.of(Number.class)) == 4
+
+        when:
+        registry.putAll([key] as Key[], [5] as Object[])
+
+        then:
+        registry.get(Keys.of(Number.class)) == 5
+
+        when:
+        registry.putAll([(key): 6])
+
+        then:
+        registry.get(Keys.of(Number.class)) == 6
+    }
+
+    def "removing a key does not invalidate unrelated resolutions"() {
+        registry.put(Keys.of(Integer.class), 1)
+        registry.put(Keys.of(ArrayList.class), [])
+        registry.get(Keys.of(Number.class))
+
+        when:
+        registry.remove(Keys.of(ArrayList.class))
+
+        then:
+        registry.resolved.containsKey(Number.class)
+        registry.get(Keys.of(Number.class)) == 1
+    }
+
+    def "bulk copy and clear invalidate the resolutions"() {
+        def other = new MapRegistry()
+        other.put(Keys.of(Integer.class), 1)
+        registry.get(Keys.of(Number.class))
+
+        when:
+        registry.putAll(other)
+
+        then:
+        registry.get(Keys.of(Number.class)) == 1
+
+        when:
+        registry.clear()
+
+        then:
+        registry.get(Keys.of(Number.class)) == null
+    }
+
+    def "plain registry matches type keys exactly"() {
+        def plain = new MapRegistry()
+        plain.put(Keys.of(Integer.class), 1)
+
+        when:
+        def value = plain.get(Keys.of(Number.class))
+        plain.resolve(Number.class)
+
+        then:
+        value == null
+        thrown(UnsupportedOperationException)
+    }
+}
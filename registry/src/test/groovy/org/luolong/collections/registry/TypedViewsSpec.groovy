@@ -0,0 +1,121 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+public class TypedViewsSpec extends Specification {
+
+    def "typed views contain entries of the type and its subtypes"(Registry registry) {
+        registry.put(Keys.of(String.class, "string"), "string")
+        registry.put(Keys.of(StringBuilder.class, "builder"), new StringBuilder("builder"))
+        registry.put(Keys.of(Integer.class, "integer"), 1)
+
+        expect:
+        registry.keySet(CharSequence.class) == [Keys.of(String.class, "string"), Keys.of(StringBuilder.class, "builder")] as Set
+        registry.values(CharSequence.class)*.toString() as Set == ["string", "builder"] as Set
+        registry.entrySet(Number.class)*.getValue() == [1]
+        registry.keySet(Object.class).size() == 3
+        registry.keySet(Thread.class).isEmpty()
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "typed views are live"(Registry registry) {
+        def keys = registry.keySet(Number.class)
+        def values = registry.values(Number.class)
+
+        when:
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(Long.class, "two"), 2L)
+        registry.remove(Keys.of(Integer.class, "one"))
+
+        then:
+        keys == [Keys.of(Long.class, "two")] as Set
+        values as List == [2L]
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "removing through a typed view removes the entry from the registry"(Registry registry) {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(String.class, "string"), "string")
+
+        when:
+        def iterator = registry.keySet(Number.class).iterator()
+        iterator.next()
+        iterator.remove()
+
+        then:
+        registry.size() == 1
+        registry.get(Keys.of(Integer.class, "one")) == null
+        registry.keySet(Object.class) == [Keys.of(String.class, "string")] as Set
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "entries are removed through a typed view after hasNext"(Registry registry) {
+        (0..<10).each { registry.put(Keys.of(Integer.class, "int-" + it), it) }
+        (0..<10).each { registry.put(Keys.of(String.class, "string-" + it), "string-" + it) }
+
+        when:
+        def seen = []
+        def iterator = registry.values(Number.class).iterator()
+        while (iterator.hasNext()) {
+            def value = iterator.next()
+            seen << value
+            if (iterator.hasNext() && value % 2 == 0) {
+                iterator.remove()
+            }
+        }
+
+        then:
+        seen.sort(false) == (0..<10)
+        registry.size() == 20 - seen.count { it % 2 == 0 && it != seen.last() }
+        registry.keySet(String.class).size() == 10
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "removeAll removes and returns the entries of the type"(Registry registry) {
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(Long.class, "two"), 2L)
+        registry.put(Keys.of(String.class, "string"), "string")
+
+        when:
+        def removed = registry.removeAll(Number.class)
+
+        then:
+        removed*.getValue() as Set == [1, 2L] as Set
+        registry.size() == 1
+        registry.keySet(Number.class).isEmpty()
+        registry.keySet(Comparable.class) == [Keys.of(String.class, "string")] as Set
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "interface key types are found by Object"(Registry registry) {
+        registry.put(Keys.of(Runnable.class), {} as Runnable)
+
+        expect:
+        registry.keySet(Object.class) == [Keys.of(Runnable.class)] as Set
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+
+    def "array key types are covariant"(Registry registry) {
+        registry.put(Keys.of(String[].class), ["a"] as String[])
+
+        expect:
+        registry.keySet(Object[].class).size() == 1
+        registry.keySet(CharSequence[].class).size() == 1
+        registry.keySet(Integer[].class).isEmpty()
+
+        where:
+        registry << RegistryImplementations.create()
+    }
+}
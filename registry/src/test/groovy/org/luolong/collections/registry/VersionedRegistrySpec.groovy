@@ -0,0 +1,245 @@
+package org.luolong.collections.registry
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+public class VersionedRegistrySpec extends Specification {
+
+    // Executor that runs the tasks only when asked to
+    def tasks = []
+    def executor = { tasks << it } as Executor
+
+    def run() {
+        def scheduled = new ArrayList(tasks)
+        tasks.clear()
+        scheduled*.run()
+    }
+
+    def "modifications increment the version"() {
+        def registry = new VersionedRegistry(new MapRegistry(), executor)
+        def key = Keys.of(Integer.class, "one")
+
+        when:
+        def initial = registry.version()
+        registry.put(key, 1)
+        def afterPut = registry.version()
+        registry.get(key)
+        def afterGet = registry.version()
+        registry.remove(key)
+
+        then:
+        afterPut > initial
+        afterGet == afterPut
+        registry.version() > afterPut
+    }
+
+    def "removing an absent key is not a modification"() {
+        def registry = new VersionedRegistry(new MapRegistry(), executor)
+        def key = Keys.of(Integer.class, "one")
+        def changes = []
+        registry.addListener(key, { changes << it } as RegistryListener)
+        registry.put(Keys.of(Long.class, "null"), null)
+        run()
+
+        when:
+        def initial = registry.version()
+        registry.remove(key)
+
+        then:
+        registry.version() == initial
+        tasks.isEmpty()
+
+        when:
+        registry.remove(Keys.of(Long.class, "null"))
+
+        then:
+        registry.version() > initial
+    }
+
+    def "removing a key does not scan the keys of the decorated registry"() {
+        def backing = Spy(MapRegistry)
+        def registry = new VersionedRegistry(backing, executor)
+        registry.put(Keys.of(Long.class, "null"), null)
+
+        when:
+        registry.remove(Keys.of(Integer.class, "absent"))
+        registry.remove(Keys.of(Long.class, "null"))
+
+        then:
+        0 * backing.keySet()
+        registry.isEmpty()
+    }
+
+    def "changes are delivered after the executor rejected a delivery"() {
+        def rejecting = true
+        def registry = new VersionedRegistry(new MapRegistry(), {
+            if (rejecting) {
+                throw new RejectedExecutionException()
+            }
+            tasks << it
+        } as Executor)
+        def key = Keys.of(Integer.class, "one")
+        def batches = []
+        registry.addListener(key, { batches << it } as RegistryListener)
+
+        when:
+        registry.put(key, 1)
+
+        then:
+        thrown(RejectedExecutionException)
+
+        when:
+        rejecting = false
+        registry.put(key, 2)
+        run()
+
+        then:
+        batches == [[key] as Set]
+    }
+
+    def "type versions change only when the entries of the type or its subtypes change"() {
+        def registry = new VersionedRegistry(new MapRegistry(), executor)
+        def numbers = registry.version(Number.class)
+        def strings = registry.version(String.class)
+
+        when:
+        registry.put(Keys.of(Integer.class, "one"), 1)
+
+        then:
+        registry.version(Number.class) > numbers
+        registry.version(String.class) == strings
+
+        when:
+        numbers = registry.version(Number.class)
+        registry.removeAll(Integer.class)
+
+        then:
+        registry.version(Number.class) > numbers
+        registry.version(String.class) == strings
+    }
+
+    def "changes are coalesced and delivered by the executor"() {
+        def registry = new VersionedRegistry(new MapRegistry(), executor)
+        def one = Keys.of(Integer.class, "one")
+        def two = Keys.of(Long.class, "two")
+        def batches = []
+        registry.addListener(Number.class, { batches << it } as RegistryListener)
+
+        when:
+        registry.put(one, 1)
+        registry.put(one, 2)
+        registry.put(two, 2L)
+        registry.put(Keys.of(String.class, "string"), "string")
+
+        then:
+        batches.isEmpty()
+        tasks.size() == 1
+
+        when:
+        run()
+
+        then:
+        batches == [[one, two] as Set]
+    }
+
+    def "key listeners are notified of the changes of the key only"() {
+        def registry = new VersionedRegistry(new MapRegistry(), executor)
+        def one = Keys.of(Integer.class, "one")
+        def batches = []
+        def listener = { batches << it } as RegistryListener
+        registry.addListener(one, listener)
+
+        when:
+        registry.put(one, 1)
+        registry.put(Keys.of(Integer.class, "two"), 2)
+        run()
+        registry.removeListener(listener)
+        registry.remove(one)
+        run()
+
+        then:
+        batches == [[one] as Set]
+    }
+
+    def "a failing listener does not prevent notifying the other listeners"() {
+        def registry = new VersionedRegistry(new MapRegistry(), executor)
+        def notified = []
+        registry.addListener(Number.class, { throw new IllegalStateException() } as RegistryListener)
+        registry.addListener(Number.class, { notified << it } as RegistryListener)
+
+        when:
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        run()
+
+        then:
+        thrown(IllegalStateException)
+        notified.size() == 1
+
+        when:
+        registry.put(Keys.of(Integer.class, "two"), 2)
+        run()
+
+        then:
+        thrown(IllegalStateException)
+        notified.size() == 2
+    }
+
+    def "changes are delivered asynchronously by default"() {
+        def registry = new VersionedRegistry(new MapRegistry())
+        def latch = new CountDownLatch(1)
+        registry.addListener(Number.class, { latch.countDown() } as RegistryListener)
+
+        when:
+        registry.put(Keys.of(Integer.class, "one"), 1)
+
+        then:
+        latch.await(10, TimeUnit.SECONDS)
+    }
+
+    def "typed views are forwarded to the decorated registry"() {
+        def backing = Spy(MapRegistry)
+        def registry = new VersionedRegistry(backing, executor)
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        registry.put(Keys.of(String.class, "string"), "string")
+        def version = registry.version()
+
+        when:
+        def values = registry.values(Number.class)
+        def iterator = registry.keySet(Number.class).iterator()
+        iterator.next()
+        iterator.remove()
+
+        then:
+        1 * backing.entrySet(Number.class)
+        1 * backing.keySet(Number.class)
+        0 * backing.entrySet()
+        values.isEmpty()
+        registry.version() > version
+        registry.keySet().contains(Keys.of(String.class, "string"))
+    }
+
+    def "modifications through the views are tracked"() {
+        def registry = new VersionedRegistry(new MapRegistry(), executor)
+        registry.put(Keys.of(Integer.class, "one"), 1)
+        def version = registry.version()
+
+        when:
+        def iterator = registry.entrySet().iterator()
+        iterator.next().setValue(2)
+
+        then:
+        registry.version() > version
+
+        when:
+        version = registry.version()
+        iterator.remove()
+
+        then:
+        registry.version() > version
+        registry.isEmpty()
+    }
+}
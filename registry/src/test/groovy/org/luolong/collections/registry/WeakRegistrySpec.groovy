@@ -0,0 +1,220 @@
+package org.luolong.collections.registry
+
+import groovy.transform.CompileStatic
+import spock.lang.Specification
+
+import javax.tools.ToolProvider
+import java.lang.ref.WeakReference
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+public class WeakRegistrySpec extends Specification {
+
+    static final String PLUGIN = """
+        package plugin;
+
+        import org.luolong.collections.registry.IdentityKey;
+        import org.luolong.collections.registry.Keys;
+
+        public class Plugin {
+            public static final IdentityKey<Plugin> KEY = Keys.identity(Plugin.class);
+        }
+        """
+
+    def registry = new WeakRegistry()
+    Path directory = Files.createTempDirectory("plugin")
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "identity keys are matched by identity"() {
+        def first = Keys.identity(String.class)
+        def second = Keys.identity(String.class)
+
+        when:
+        registry.put(first, "first")
+        registry.put(second, "second")
+
+        then:
+        registry.size() == 2
+        registry.get(first) == "first"
+        registry.get(second) == "second"
+    }
+
+    def "named and type keys are matched by value"() {
+        def key = Keys.of(String.class, "key")
+        def type = Keys.of(Integer.class)
+
+        when:
+        registry.put(key, "value")
+        registry.put(type, 42)
+
+        then:
+        registry.get(Keys.of(String.class, "key")) == "value"
+        registry.get(Keys.of(Integer.class)) == 42
+        registry.remove(Keys.of(String.class, "key")) == "value"
+        registry.get(key) == null
+        registry.size() == 1
+    }
+
+    def "null values are kept in the registry"() {
+        def key = Keys.of(String.class, "key")
+
+        when:
+        registry.put(key, null)
+
+        then:
+        registry.size() == 1
+        registry.get(key) == null
+        registry.entrySet().first().getValue() == null
+    }
+
+    def "entries are iterated and removed through the iterator"() {
+        def keys = (0..<100).collect { Keys.of(Integer.class, "key-" + it) }
+        keys.eachWithIndex { key, i -> registry.put(key, i) }
+
+        when:
+        def iterator = registry.entrySet().iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() % 2 == 0) {
+                iterator.remove()
+            }
+        }
+
+        then:
+        registry.size() == 50
+        registry.values().every { it % 2 == 1 }
+        keys.count { registry.get(it) != null } == 50
+    }
+
+    def "entry of a collected key is expunged"() {
+        registry.put(Keys.of(String.class, "never-referenced"), "expunged")
+        def key = Keys.of(String.class, "kept")
+        registry.put(key, "kept")
+        putUnreachable(registry)
+
+        expect:
+        collect { registry.size() == 1 }
+        registry.get(key) == "kept"
+    }
+
+    def "soft values are held until collected"() {
+        def soft = WeakRegistry.withSoftValues()
+        def key = Keys.identity(String.class)
+
+        when:
+        soft.put(key, "old")
+        soft.put(key, "new")
+        System.gc()
+
+        then:
+        soft.get(key) == "new"
+        soft.size() == 1
+
+        when:
+        soft.put(key, null)
+
+        then:
+        soft.get(key) == null
+        soft.size() == 1
+    }
+
+    def "class loader of a key type is collected with its entries"() {
+        compilePlugin()
+
+        when:
+        def loader = registerPlugin(directory, registry, null)
+
+        then:
+        collect { loader.get() == null }
+        registry.isEmpty()
+    }
+
+    def "cleared soft values are expunged with their entries"() {
+        compilePlugin()
+
+        when:
+        def process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                // Clears the soft references on every collection, without putting memory under pressure
+                "-XX:SoftRefLRUPolicyMSPerMB=0", "-Xmx64m",
+                "-cp", System.getProperty("java.class.path"),
+                SoftValues.name, directory.toString())
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+
+        then:
+        output == "expunged"
+        process.waitFor() == 0
+    }
+
+    private void compilePlugin() {
+        def file = directory.resolve("plugin/Plugin.java")
+        Files.createDirectories(file.parent)
+        file.text = PLUGIN
+        def compiler = ToolProvider.getSystemJavaCompiler()
+        assert compiler.run(null, null, null, "-d", directory.toString(),
+                "-classpath", System.getProperty("java.class.path"), file.toString()) == 0
+    }
+
+    /**
+     * Loads the plugin in a class loader of its own and registers values under keys of the plugin
+     * class, without keeping any references to them.
+     * <p/>
+     * Statically compiled, as the call site caches of dynamic Groovy calls retain the classes of
+     * their arguments.
+     */
+    @CompileStatic
+    @SuppressWarnings("unchecked")
+    static WeakReference<ClassLoader> registerPlugin(Path directory, Registry registry, Registry soft) {
+        def loader = new URLClassLoader([directory.toUri().toURL()] as URL[], WeakRegistrySpec.classLoader)
+        Class<Object> type = (Class<Object>) loader.loadClass("plugin.Plugin")
+        Registry.Key<Object> key = (Registry.Key<Object>) type.getField("KEY").get(null)
+        registry.put(key, "identity")
+        registry.put(Keys.of(type), "type")
+        if (soft != null) {
+            // The plugin refers to its key through its class, so it is only collected with soft values
+            soft.put(key, type.newInstance())
+        }
+        new WeakReference<ClassLoader>(loader)
+    }
+
+    private static void putUnreachable(Registry registry) {
+        registry.put(Keys.of(String.class, "unreachable"), "value")
+    }
+
+    /**
+     * Runs the garbage collector until the condition holds.
+     */
+    static boolean collect(Closure<Boolean> condition) {
+        for (int i = 0; i < 20; i++) {
+            if (condition()) {
+                return true
+            }
+            System.gc()
+            Thread.sleep(50)
+        }
+        condition()
+    }
+
+    /**
+     * Registers soft values, one of them keeping the class loader of its key type alive, and waits
+     * for them to be collected. Run in a JVM of its own that clears soft references eagerly.
+     */
+    static class SoftValues {
+
+        static void main(String[] args) {
+            def soft = WeakRegistry.withSoftValues()
+            def key = Keys.of(String.class, "key")
+            soft.put(key, new StringBuilder("value"))
+            def loader = WeakRegistrySpec.registerPlugin(Paths.get(args[0]), new WeakRegistry(), soft)
+
+            def expunged = WeakRegistrySpec.collect { loader.get() == null && soft.isEmpty() }
+            System.out.print(expunged ? "expunged" : "kept " + soft.size() + " entries")
+            System.exit(expunged ? 0 : 1)
+        }
+    }
+}